@@ -5,6 +5,7 @@
  */
 
 import java.util.Iterator;
+import java.util.function.Predicate;
 
 public abstract class AbstractSet<E> implements ISet<E> {
 
@@ -38,6 +39,60 @@ public abstract class AbstractSet<E> implements ISet<E> {
     return modified;
   }
 
+  /*
+   * Walks whichever side is smaller: removes each element of otherSet from
+   * this set, or removes through the iterator the elements of this set that
+   * otherSet contains.
+   */
+  @Override
+  public boolean removeAll(ISet<E> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    if (otherSet == this) {
+      boolean modified = size() > 0;
+      clear();
+      return modified;
+    }
+    if (otherSet.size() < size()) {
+      boolean modified = false;
+      for (E e : otherSet) {
+        if (remove(e)) {
+          modified = true;
+        }
+      }
+      return modified;
+    }
+    return removeIf(otherSet::contains);
+  }
+
+  @Override
+  public boolean retainAll(ISet<E> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    if (otherSet == this) {
+      return false;
+    }
+    return removeIf(e -> !otherSet.contains(e));
+  }
+
+  @Override
+  public boolean removeIf(Predicate<? super E> filter) {
+    if (filter == null) {
+      throw new IllegalArgumentException("Filter is null");
+    }
+    boolean modified = false;
+    Iterator<E> itr = this.iterator();
+    while (itr.hasNext()) {
+      if (filter.test(itr.next())) {
+        itr.remove();
+        modified = true;
+      }
+    }
+    return modified;
+  }
+
   @Override
   public void clear() {
     Iterator<E> itr = this.iterator();
@@ -85,9 +140,25 @@ public abstract class AbstractSet<E> implements ISet<E> {
     assert obj instanceof ISet;
     @SuppressWarnings("unchecked")
     ISet<E> other = (ISet<E>) obj;
+    // cheap rejections first, the element walk only when both match
+    if (size() != other.size() || fingerprint() != other.fingerprint()) {
+      return false;
+    }
     return containsAll(other);
   }
 
+  /**
+   * Return a hash code for this set, derived from fingerprint() so that
+   * equal sets have equal hash codes.
+   *
+   * @return a hash code for this set
+   */
+  @Override
+  public int hashCode() {
+    long fingerprint = fingerprint();
+    return (int) (fingerprint ^ (fingerprint >>> 32));
+  }
+
   @Override
   // Overrides Object's clone method.
   public abstract Object clone();
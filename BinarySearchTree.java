@@ -1,9 +1,22 @@
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A binary search tree class.
+ * <br>
+ * The tree is kept balanced as an AVL tree, so add, remove and isPresent
+ * are O(log n) even when the elements arrive in sorted order. Every node
+ * also knows the size of its subtree, which makes get(kth), rank and the
+ * counting methods O(log n) as well.
  *
  * @author Abraham Martinez
  * @version 1.1
@@ -12,17 +25,26 @@ import java.util.List;
  *            Comparable.
  *
  */
-public class BinarySearchTree<E extends Comparable<? super E>> {
+public class BinarySearchTree<E extends Comparable<? super E>> implements Iterable<E> {
 
   private BSTNode<E> root;
   private int size;
-  private int counter;
-  private boolean logicalSwitch; // employs two separate functions for add() and remove()
+  private int modCount; // changes on every add or remove, for fail-fast iterators
 
   public BinarySearchTree() {
     root = null;
   }
 
+  /**
+   * Return the root node of this tree, null if the tree is empty, for
+   * subclasses that walk the nodes themselves.
+   *
+   * @return the root of this tree
+   */
+  protected BSTNode<E> root() {
+    return root;
+  }
+
   /**
    * Add the specified item to this Binary Search Tree if it is not already
    * present.
@@ -37,24 +59,34 @@ public class BinarySearchTree<E extends Comparable<? super E>> {
    *         old size() + 1
    */
   public boolean add(E value) {
-    logicalSwitch = true; // notDuplicate bool
-    root = add(value, root);
-    size += logicalSwitch ? 1 : 0;
-    return logicalSwitch;
-  }
-
-  // helper for add
-  private BSTNode<E> add(E value, BSTNode<E> root) {
     if (root == null) {
       root = new BSTNode<E>(value);
-    } else if (root.data.equals(value)) {
-      logicalSwitch = false;
-    } else if (value.compareTo(root.data) <= 0) {
-      root.setLeft(add(value, root.left));
+      size++;
+      modCount++;
+      return true;
+    }
+    // walk down, remembering the path for the rebalance
+    BSTNode<E>[] path = newPath();
+    int depth = 0;
+    BSTNode<E> node = root;
+    int compare;
+    do {
+      compare = value.compareTo(node.data);
+      if (compare == 0) {
+        return false;
+      }
+      path[depth++] = node;
+      node = compare < 0 ? node.left : node.right;
+    } while (node != null);
+    if (compare < 0) {
+      path[depth - 1].setLeft(new BSTNode<E>(value));
     } else {
-      root.setRight(add(value, root.right));
+      path[depth - 1].setRight(new BSTNode<E>(value));
     }
-    return root; // same root is delivered back, unless it was null.
+    size++;
+    modCount++;
+    rebalance(path, depth);
+    return true;
   }
 
   /**
@@ -72,47 +104,43 @@ public class BinarySearchTree<E extends Comparable<? super E>> {
     if (value == null) {
       throw new IllegalArgumentException("Value is null");
     }
-    logicalSwitch = false; // isPresent bool
-    root = remove(value, root);
-    size -= logicalSwitch ? 1 : 0;
-    return logicalSwitch;
-  }
-
-  /*
-   * Helper for remove
-   * 
-   * Update: 11/19/21 @11:15PM
-   * Update: 5/5/22 @8:11PM
-   * Desc: Algorithm updated. Correction for ample cases.
-   * 
-   */
-  private BSTNode<E> remove(E value, BSTNode<E> root) {
-    if (root != null) {
-      if (root.data.equals(value)) {
-        logicalSwitch = true;
-        if (root.getLeft() == null && root.getRight() == null) { // leaf node
-          root = null;
-        } else if (root.getLeft() == null) {
-          root = root.right;
-        } else if (root.getRight() == null) {
-          root = root.left;
-        } else { // both nodes
-          BSTNode<E> search = root.right;
-          while (search.getLeft() != null) {
-            search = search.getLeft();
-          }
-          root.setData(search.getData());
-          root.right = remove(root.data, root.right); // important
-        }
-      } else {
-        if (value.compareTo(root.getData()) < 0) {
-          root.setLeft(remove(value, root.left));
-        } else {
-          root.setRight(remove(value, root.right));
-        }
+    BSTNode<E>[] path = newPath();
+    int depth = 0;
+    BSTNode<E> node = root;
+    while (node != null) {
+      int compare = value.compareTo(node.data);
+      if (compare == 0) {
+        break;
       }
+      path[depth++] = node;
+      node = compare < 0 ? node.left : node.right;
     }
-    return root;
+    if (node == null) {
+      return false;
+    }
+    BSTNode<E> target = node; // the node that leaves the tree
+    if (node.left != null && node.right != null) {
+      // take the successor's value, then unlink the successor instead
+      path[depth++] = node;
+      target = node.right;
+      while (target.left != null) {
+        path[depth++] = target;
+        target = target.left;
+      }
+      node.setData(target.data);
+    }
+    BSTNode<E> child = target.left != null ? target.left : target.right;
+    if (depth == 0) {
+      root = child;
+    } else if (path[depth - 1].left == target) {
+      path[depth - 1].setLeft(child);
+    } else {
+      path[depth - 1].setRight(child);
+    }
+    size--;
+    modCount++;
+    rebalance(path, depth);
+    return true;
   }
 
   /**
@@ -128,25 +156,18 @@ public class BinarySearchTree<E extends Comparable<? super E>> {
     if (value == null) {
       throw new IllegalArgumentException("Value is null");
     }
-    return isPresent(value, root);
-  }
-
-  // helper for isPresent
-  private boolean isPresent(E value, BSTNode<E> root) {
-    if (root == null) {
-      return false;
-    } else {
-      int compare = value.compareTo(root.data);
+    BSTNode<E> node = root;
+    while (node != null) {
+      int compare = value.compareTo(node.data);
       if (compare == 0) { // node found!
         return true;
-      } else if (compare < 0) { // value smaller than node value
-        return isPresent(value, root.getLeft());
-      } else { // value greater than node value
-        return isPresent(value, root.getRight());
       }
+      node = compare < 0 ? node.left : node.right;
     }
+    return false;
   }
 
+
   /**
    * Return how many elements are in this Binary Search Tree.
    * <br>
@@ -165,7 +186,7 @@ public class BinarySearchTree<E extends Comparable<? super E>> {
    * pre: none<br>
    * post: return the height of this tree.
    * If the tree is empty return -1, otherwise return the
-   * height of the tree
+   * height of the tree. O(1), every node keeps its height.
    * 
    * @return the height of this tree or -1 if the tree is empty
    */
@@ -173,15 +194,9 @@ public class BinarySearchTree<E extends Comparable<? super E>> {
     return height(root);
   }
 
-  // helper for height
-  private int height(BSTNode<E> root) {
-    if (root == null) {
-      return -1;
-    } else if (root.left == null && root.right == null) { // is it a leaf?
-      return 0;
-    } else {
-      return 1 + Math.max(height(root.left), height(root.right));
-    }
+  // helper for height, -1 for an empty subtree
+  private static int height(BSTNode<?> root) {
+    return root == null ? -1 : root.height;
   }
 
   /**
@@ -195,23 +210,11 @@ public class BinarySearchTree<E extends Comparable<? super E>> {
    *         if the tree is empty return an empty List
    */
   public List<E> getAll() {
-    List<E> result = new ArrayList<>();
-    getAll(result, root);
-    Collections.sort(result);
-    return result;
-  }
-
-  // helper for getAll
-  private void getAll(List<E> result, BSTNode<E> root) {
-    if (root != null) {
-      result.add(root.data);
-      if (root.left != null) {
-        getAll(result, root.left);
-      }
-      if (root.right != null) {
-        getAll(result, root.right);
-      }
+    List<E> result = new ArrayList<>(size);
+    for (E value : this) {
+      result.add(value);
     }
+    return result;
   }
 
   /**
@@ -278,30 +281,86 @@ public class BinarySearchTree<E extends Comparable<? super E>> {
    *         false otherwise.
    */
   public boolean iterativeAdd(E data) {
-    logicalSwitch = true; // notDuplicate bool
-    if (root != null) {
-      logicalSwitch = !data.equals(root.data); // check duplicity in starting root
-      BSTNode<E> root = this.root;
-      if (data.compareTo(root.data) <= 0 && logicalSwitch) {
-        while (root.getLeft() != null && logicalSwitch) {
-          root = root.getLeft();
-          logicalSwitch = !data.equals(root.data); // check duplicity in left branch
-        }
-        if (logicalSwitch)
-          root.setLeft(new BSTNode<E>(data));
-      } else if (logicalSwitch) {
-        while (root.getRight() != null && logicalSwitch) {
-          root = root.getRight();
-          logicalSwitch = !data.equals(root.data); // check duplicity in right branch
+    return add(data); // add is iterative as well
+  }
+
+  // an empty path long enough for any root-to-leaf walk, even after an add
+  @SuppressWarnings("unchecked")
+  private BSTNode<E>[] newPath() {
+    return (BSTNode<E>[]) new BSTNode<?>[height(root) + 2];
+  }
+
+  // rebalances path[depth - 1] up to the root, relinking rotated subtrees
+  private void rebalance(BSTNode<E>[] path, int depth) {
+    for (int i = depth - 1; i >= 0; i--) {
+      BSTNode<E> node = path[i];
+      BSTNode<E> balanced = balance(node);
+      if (balanced != node) {
+        if (i == 0) {
+          root = balanced;
+        } else if (path[i - 1].left == node) {
+          path[i - 1].setLeft(balanced);
+        } else {
+          path[i - 1].setRight(balanced);
         }
-        if (logicalSwitch)
-          root.setRight(new BSTNode<E>(data));
       }
-    } else {
-      root = new BSTNode<E>(data);
     }
-    size += logicalSwitch ? 1 : 0;
-    return logicalSwitch;
+  }
+
+
+  /*
+   * AVL rebalancing. A node's height is 1 + the larger height of its
+   * children (a leaf is 0). After a change below it, a node whose
+   * children's heights differ by 2 is fixed with one or two rotations,
+   * which keeps the height of the tree under 1.45 log2(n + 2).
+   * Subtree sizes are recomputed in the same places as heights.
+   */
+
+  // recomputes node's height and size from its children and restores the AVL balance
+  private BSTNode<E> balance(BSTNode<E> node) {
+    update(node);
+    int skew = height(node.left) - height(node.right);
+    if (skew > 1) {
+      if (height(node.left.left) < height(node.left.right)) {
+        node.left = rotateLeft(node.left); // left-right case
+      }
+      return rotateRight(node);
+    }
+    if (skew < -1) {
+      if (height(node.right.right) < height(node.right.left)) {
+        node.right = rotateRight(node.right); // right-left case
+      }
+      return rotateLeft(node);
+    }
+    return node;
+  }
+
+  private BSTNode<E> rotateRight(BSTNode<E> node) {
+    BSTNode<E> pivot = node.left;
+    node.left = pivot.right;
+    pivot.right = node;
+    update(node);
+    update(pivot);
+    return pivot;
+  }
+
+  private BSTNode<E> rotateLeft(BSTNode<E> node) {
+    BSTNode<E> pivot = node.right;
+    node.right = pivot.left;
+    pivot.left = node;
+    update(node);
+    update(pivot);
+    return pivot;
+  }
+
+  private static void update(BSTNode<?> node) {
+    node.height = 1 + Math.max(height(node.left), height(node.right));
+    node.size = 1 + size(node.left) + size(node.right);
+  }
+
+  // number of nodes in the subtree, 0 for an empty subtree
+  private static int size(BSTNode<?> root) {
+    return root == null ? 0 : root.size;
   }
 
   /**
@@ -318,32 +377,100 @@ public class BinarySearchTree<E extends Comparable<? super E>> {
     if (kth < 0 || kth >= size) {
       throw new IllegalArgumentException("Kth element out of bounds");
     }
-    counter = 0;
-    return get(root, kth);
+    // the left subtree's size tells which way the kth element lies
+    BSTNode<E> node = root;
+    while (true) {
+      int leftSize = size(node.left);
+      if (kth < leftSize) {
+        node = node.left;
+      } else if (kth == leftSize) {
+        return node.data;
+      } else {
+        kth -= leftSize + 1;
+        node = node.right;
+      }
+    }
   }
 
-  /* Helper for get method (uses inorder traversal) */
-  private E get(BSTNode<E> root, int kth) {
-
-    // base case
-    if (root == null)
-      return null;
-
-    // search left
-    E left = get(root.left, kth);
+  /**
+   * Return the position of value in this Binary Search Tree, the inverse
+   * of get: if rank(value) = k and k != -1, get(k) equals value.
+   * <br>
+   * pre: <tt>value</tt> != null
+   *
+   * @param value the value to look for in the tree
+   * @return the number of elements less than value if value is present,
+   *         -1 otherwise
+   */
+  public int rank(E value) {
+    if (value == null) {
+      throw new IllegalArgumentException("Value is null.");
+    }
+    int less = 0;
+    BSTNode<E> node = root;
+    while (node != null) {
+      int cmp = value.compareTo(node.data);
+      if (cmp < 0) {
+        node = node.left;
+      } else if (cmp > 0) {
+        less += size(node.left) + 1;
+        node = node.right;
+      } else {
+        return less + size(node.left);
+      }
+    }
+    return -1;
+  }
 
-    // if kth's smallest is found in left subtree, return it.
-    if (left != null) {
-      return left;
+  /**
+   * Return the number of elements in this Binary Search Tree that are
+   * less than value. value does not have to be present.
+   * <br>
+   * pre: <tt>value</tt> != null
+   *
+   * @param value the cutoff value
+   * @return the number of elements less than value
+   */
+  public int countLessThan(E value) {
+    if (value == null) {
+      throw new IllegalArgumentException("Value is null.");
     }
+    return countLess(value);
+  }
 
-    // if current element is kth's smallest, return it
-    if (counter == kth)
-      return root.data;
-    counter++;
+  // helper for countLessThan and countInRange
+  private int countLess(E value) {
+    int less = 0;
+    BSTNode<E> node = root;
+    while (node != null) {
+      if (value.compareTo(node.data) <= 0) {
+        node = node.left;
+      } else {
+        less += size(node.left) + 1;
+        node = node.right;
+      }
+    }
+    return less;
+  }
 
-    // else search in right subtree
-    return get(root.right, kth);
+  /**
+   * Return the number of elements in this Binary Search Tree that are
+   * greater than or equal to lo and less than hi.
+   * <br>
+   * pre: <tt>lo</tt> != null, <tt>hi</tt> != null, lo <= hi
+   *
+   * @param lo the low end of the range, inclusive
+   * @param hi the high end of the range, exclusive
+   * @return the number of elements in [lo, hi)
+   */
+  public int countInRange(E lo, E hi) {
+    if (lo == null || hi == null) {
+      throw new IllegalArgumentException("Value is null.");
+    }
+    if (lo.compareTo(hi) > 0) {
+      throw new IllegalArgumentException("Invalid range.");
+    }
+    return countLess(hi) - countLess(lo);
   }
 
   /**
@@ -361,32 +488,10 @@ public class BinarySearchTree<E extends Comparable<? super E>> {
     if (value == null)
       throw new IllegalArgumentException("Value is null.");
     List<E> result = new ArrayList<>();
-    getAllLessThan(result, root, value);
+    new RangeIterator(null, false, value, false).forEachRemaining(result::add);
     return result;
   }
 
-  /*
-   * helper for getAllLessThan
-   * Cool thing here is that since it does an inorder traversal, it
-   * adds items to the list in ascending order without calling Collections.sort!
-   */
-  private void getAllLessThan(List<E> result, BSTNode<E> root, E value) {
-    if (root == null) {
-      return;
-    }
-    // getAllLessThan(result, root.left, value);
-    // if(root.data.compareTo(value) < 0) {
-    // result.add(root.data);
-    // }
-    // getAllLessThan(result, root.right, value);
-
-    if (root.data.compareTo(value) < 0) {
-      result.add(root.data);
-    }
-    getAllLessThan(result, root.left, value);
-    getAllLessThan(result, root.right, value);
-  }
-
   /**
    * Return a List with all values in this Binary Search Tree
    * that are greater than the parameter <tt>value</tt>.
@@ -403,20 +508,303 @@ public class BinarySearchTree<E extends Comparable<? super E>> {
       throw new IllegalArgumentException("Value is null.");
     }
     List<E> result = new ArrayList<>();
-    getAllGreaterThan(result, root, value);
+    new RangeIterator(value, false, null, false).forEachRemaining(result::add);
     return result;
   }
 
-  // helper for getAllGreaterThan
-  private void getAllGreaterThan(List<E> result, BSTNode<E> root, E value) {
-    if (root == null) {
-      return;
+  /**
+   * Return an iterator over the values of this Binary Search Tree in
+   * ascending order. The iterator supports remove and is fail-fast: it
+   * throws ConcurrentModificationException if the tree is changed other
+   * than through the iterator.
+   * <br>
+   * pre: none
+   *
+   * @return an iterator over this tree in ascending order
+   */
+  @Override
+  public Iterator<E> iterator() {
+    return new TreeIterator(false);
+  }
+
+  /**
+   * Return an iterator over the values of this Binary Search Tree in
+   * descending order. It behaves like iterator() otherwise.
+   * <br>
+   * pre: none
+   *
+   * @return an iterator over this tree in descending order
+   */
+  public Iterator<E> descendingIterator() {
+    return new TreeIterator(true);
+  }
+
+  /**
+   * Return an iterator over the values of this Binary Search Tree between
+   * lo and hi, in ascending order. A null bound leaves that end open.
+   * The iterator is lazy: it finds the first value in O(log n) and each
+   * call to next() is O(1) amortized. It does not support remove.
+   * <br>
+   * pre: lo <= hi if neither is null, the tree is not changed while the
+   * iterator is in use
+   *
+   * @param lo          the low end of the range, or null for no low end
+   * @param loInclusive true if a value equal to lo is in the range
+   * @param hi          the high end of the range, or null for no high end
+   * @param hiInclusive true if a value equal to hi is in the range
+   * @return an iterator over the values in the range
+   */
+  public Iterator<E> range(E lo, boolean loInclusive, E hi, boolean hiInclusive) {
+    if (lo != null && hi != null && lo.compareTo(hi) > 0) {
+      throw new IllegalArgumentException("Invalid range.");
+    }
+    return new RangeIterator(lo, loInclusive, hi, hiInclusive);
+  }
+
+  /**
+   * Perform action on every value of this Binary Search Tree that is
+   * greater than or equal to lo and less than hi, in ascending order.
+   * Only subtrees that can hold such values are visited.
+   * <br>
+   * pre: <tt>lo</tt> != null, <tt>hi</tt> != null, lo <= hi,
+   * <tt>action</tt> != null
+   *
+   * @param lo     the low end of the range, inclusive
+   * @param hi     the high end of the range, exclusive
+   * @param action the action to perform on each value in [lo, hi)
+   */
+  public void forEachInRange(E lo, E hi, Consumer<? super E> action) {
+    if (lo == null || hi == null || action == null) {
+      throw new IllegalArgumentException("Value is null.");
+    }
+    if (lo.compareTo(hi) > 0) {
+      throw new IllegalArgumentException("Invalid range.");
+    }
+    new RangeIterator(lo, true, hi, false).forEachRemaining(action);
+  }
+
+
+  /**
+   * Return the largest value in this Binary Search Tree that is less than
+   * or equal to value.
+   * <br>
+   * pre: <tt>value</tt> != null
+   *
+   * @param value the value to search for
+   * @return the largest value <= value, or null if there is none
+   */
+  public E floor(E value) {
+    return below(value, true);
+  }
+
+  /**
+   * Return the smallest value in this Binary Search Tree that is greater
+   * than or equal to value.
+   * <br>
+   * pre: <tt>value</tt> != null
+   *
+   * @param value the value to search for
+   * @return the smallest value >= value, or null if there is none
+   */
+  public E ceiling(E value) {
+    return above(value, true);
+  }
+
+  /**
+   * Return the smallest value in this Binary Search Tree that is strictly
+   * greater than value. value does not have to be present.
+   * <br>
+   * pre: <tt>value</tt> != null
+   *
+   * @param value the value to search for
+   * @return the smallest value > value, or null if there is none
+   */
+  public E successor(E value) {
+    return above(value, false);
+  }
+
+  /**
+   * Return the largest value in this Binary Search Tree that is strictly
+   * less than value. value does not have to be present.
+   * <br>
+   * pre: <tt>value</tt> != null
+   *
+   * @param value the value to search for
+   * @return the largest value < value, or null if there is none
+   */
+  public E predecessor(E value) {
+    return below(value, false);
+  }
+
+  // helper for floor and predecessor
+  private E below(E value, boolean inclusive) {
+    if (value == null) {
+      throw new IllegalArgumentException("Value is null.");
     }
-    getAllGreaterThan(result, root.left, value);
-    if (root.data.compareTo(value) > 0) {
-      result.add(root.data);
+    E result = null;
+    BSTNode<E> node = root;
+    while (node != null) {
+      int cmp = node.data.compareTo(value);
+      if (cmp < 0 || (cmp == 0 && inclusive)) {
+        result = node.data; // best so far, look for a larger one
+        node = node.right;
+      } else {
+        node = node.left;
+      }
+    }
+    return result;
+  }
+
+  // helper for ceiling and successor
+  private E above(E value, boolean inclusive) {
+    if (value == null) {
+      throw new IllegalArgumentException("Value is null.");
+    }
+    E result = null;
+    BSTNode<E> node = root;
+    while (node != null) {
+      int cmp = node.data.compareTo(value);
+      if (cmp > 0 || (cmp == 0 && inclusive)) {
+        result = node.data; // best so far, look for a smaller one
+        node = node.left;
+      } else {
+        node = node.right;
+      }
+    }
+    return result;
+  }
+
+  /*
+   * In-order iterator, forwards or backwards. The stack holds the nodes
+   * still to visit on the way back up. Removing rebalances the tree and
+   * may move values between nodes, so remove() rebuilds the stack by
+   * seeking past the removed value again, O(log n).
+   */
+  private class TreeIterator implements Iterator<E> {
+    private final ArrayDeque<BSTNode<E>> stack = new ArrayDeque<>();
+    private final boolean descending;
+    private int expectedModCount = modCount;
+    private E last;
+    private boolean removeOK;
+
+    TreeIterator(boolean descending) {
+      this.descending = descending;
+      seekPast(null);
+    }
+
+    // fills the stack with the path to the first value after value, or
+    // to the first value of all if value is null
+    private void seekPast(E value) {
+      stack.clear();
+      BSTNode<E> node = root;
+      while (node != null) {
+        int cmp = value == null ? 0 : node.data.compareTo(value);
+        if (value == null || (descending ? cmp < 0 : cmp > 0)) {
+          stack.push(node);
+          node = descending ? node.right : node.left;
+        } else {
+          node = descending ? node.left : node.right;
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !stack.isEmpty();
+    }
+
+    @Override
+    public E next() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      BSTNode<E> node = stack.poll();
+      if (node == null) {
+        throw new NoSuchElementException();
+      }
+      BSTNode<E> n = descending ? node.left : node.right;
+      while (n != null) {
+        stack.push(n);
+        n = descending ? n.right : n.left;
+      }
+      last = node.data;
+      removeOK = true;
+      return last;
+    }
+
+    @Override
+    public void remove() {
+      if (!removeOK) {
+        throw new IllegalStateException();
+      }
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      BinarySearchTree.this.remove(last);
+      expectedModCount = modCount;
+      seekPast(last);
+      removeOK = false;
+    }
+  }
+
+  /*
+   * In-order iterator over a range. The stack holds the nodes still to
+   * visit on the way back up; it starts as the path to the first value
+   * in range, so whole subtrees below lo are never touched.
+   */
+  private class RangeIterator implements Iterator<E> {
+    private final ArrayDeque<BSTNode<E>> stack = new ArrayDeque<>();
+    private final E hi;
+    private final boolean hiInclusive;
+    private BSTNode<E> next;
+
+    RangeIterator(E lo, boolean loInclusive, E hi, boolean hiInclusive) {
+      this.hi = hi;
+      this.hiInclusive = hiInclusive;
+      BSTNode<E> node = root;
+      while (node != null) {
+        int cmp = lo == null ? 1 : node.data.compareTo(lo);
+        if (cmp > 0 || (cmp == 0 && loInclusive)) {
+          stack.push(node);
+          node = node.left;
+        } else {
+          node = node.right;
+        }
+      }
+      advance();
+    }
+
+    // pops the next node, or sets next to null once past hi
+    private void advance() {
+      next = stack.poll();
+      if (next == null) {
+        return;
+      }
+      int cmp = hi == null ? -1 : next.data.compareTo(hi);
+      if (cmp > 0 || (cmp == 0 && !hiInclusive)) {
+        next = null;
+        stack.clear();
+        return;
+      }
+      for (BSTNode<E> n = next.right; n != null; n = n.left) {
+        stack.push(n);
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public E next() {
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+      E result = next.data;
+      advance();
+      return result;
     }
-    getAllGreaterThan(result, root.right, value);
   }
 
   /**
@@ -429,17 +817,193 @@ public class BinarySearchTree<E extends Comparable<? super E>> {
    *         the parameter d.
    */
   public int numNodesAtDepth(int d) {
-    return numNodesAtDepth(root, d);
+    if (d < 0 || d > height(root)) {
+      return 0;
+    }
+    // depth-first, keeping the right children still to visit
+    BSTNode<E>[] stack = newPath();
+    int[] depths = new int[stack.length];
+    int top = 0;
+    int count = 0;
+    BSTNode<E> node = root;
+    int depth = 0;
+    while (true) {
+      while (node != null && depth < d) {
+        if (node.right != null) {
+          stack[top] = node.right;
+          depths[top++] = depth + 1;
+        }
+        node = node.left;
+        depth++;
+      }
+      if (node != null) {
+        count++;
+      }
+      if (top == 0) {
+        return count;
+      }
+      node = stack[--top];
+      depth = depths[top];
+    }
   }
 
-  private int numNodesAtDepth(BSTNode<E> root, int d) {
-    if (root == null) {
-      return 0;
+
+  /**
+   * Return a Spliterator over the elements of this tree in ascending order.
+   * trySplit() hands off a subtree at a time, so a balanced tree splits
+   * into halves. Subtree sizes give every piece its exact size.
+   * <br>
+   * pre: the tree is not changed while the Spliterator is in use
+   *
+   * @return a Spliterator over the elements of this tree
+   */
+  public Spliterator<E> spliterator() {
+    TreeSpliterator<E> result = new TreeSpliterator<>(size);
+    if (root != null) {
+      result.frames.add(new Frame<>(Frame.WHOLE, root));
     }
-    if (d == 0) {
-      return 1;
-    } else {
-      return numNodesAtDepth(root.right, d - 1) + numNodesAtDepth(root.left, d - 1);
+    return result;
+  }
+
+  /**
+   * Return a sequential Stream of the elements of this tree in ascending
+   * order.
+   * <br>
+   * pre: none
+   *
+   * @return a Stream over this tree
+   */
+  public Stream<E> stream() {
+    return StreamSupport.stream(spliterator(), false);
+  }
+
+  /**
+   * Return a parallel Stream of the elements of this tree.
+   * <br>
+   * pre: none
+   *
+   * @return a possibly parallel Stream over this tree
+   */
+  public Stream<E> parallelStream() {
+    return StreamSupport.stream(spliterator(), true);
+  }
+
+  /*
+   * A piece of an in-order traversal: a whole subtree, a node followed by
+   * its right subtree, or a single node.
+   */
+  private static final class Frame<E extends Comparable<? super E>> {
+    private static final int WHOLE = 0;
+    private static final int NODE_THEN_RIGHT = 1;
+    private static final int SINGLE = 2;
+
+    private final int kind;
+    private final BSTNode<E> node;
+
+    Frame(int kind, BSTNode<E> node) {
+      this.kind = kind;
+      this.node = node;
+    }
+
+    // number of elements this frame will produce
+    int size() {
+      if (kind == WHOLE) {
+        return node.size;
+      }
+      return kind == NODE_THEN_RIGHT ? 1 + BinarySearchTree.size(node.right) : 1;
+    }
+  }
+
+  /*
+   * Walks a deque of frames from the front. A WHOLE frame is expanded into
+   * the frames of its left spine; once expanded, the deque holds the nodes
+   * still to visit on the path back up, the last of which carries the
+   * largest right subtree.
+   */
+  private static final class TreeSpliterator<E extends Comparable<? super E>> implements Spliterator<E> {
+    private final ArrayDeque<Frame<E>> frames = new ArrayDeque<>();
+    private long remaining;
+
+    TreeSpliterator(long remaining) {
+      this.remaining = remaining;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super E> action) {
+      if (action == null) {
+        throw new NullPointerException();
+      }
+      while (!frames.isEmpty()) {
+        Frame<E> frame = frames.pollFirst();
+        if (frame.kind == Frame.WHOLE) {
+          for (BSTNode<E> n = frame.node; n != null; n = n.left) {
+            frames.addFirst(new Frame<>(Frame.NODE_THEN_RIGHT, n));
+          }
+        } else {
+          if (frame.kind == Frame.NODE_THEN_RIGHT && frame.node.right != null) {
+            frames.addFirst(new Frame<>(Frame.WHOLE, frame.node.right));
+          }
+          remaining--;
+          action.accept(frame.node.data);
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public Spliterator<E> trySplit() {
+      TreeSpliterator<E> prefix = new TreeSpliterator<>(0);
+      if (frames.size() > 1) {
+        // everything but the last frame
+        Frame<E> last = frames.pollLast();
+        prefix.frames.addAll(frames);
+        frames.clear();
+        frames.add(last);
+      } else if (frames.size() == 1 && frames.peekFirst().kind != Frame.SINGLE) {
+        Frame<E> frame = frames.pollFirst();
+        BSTNode<E> n = frame.node;
+        if (frame.kind == Frame.NODE_THEN_RIGHT) {
+          if (n.right == null) {
+            frames.add(new Frame<>(Frame.SINGLE, n));
+            return null;
+          }
+          prefix.frames.add(new Frame<>(Frame.SINGLE, n));
+          n = n.right;
+        }
+        // the left subtree and n before, the right subtree after
+        if (n.left != null) {
+          prefix.frames.add(new Frame<>(Frame.WHOLE, n.left));
+        }
+        prefix.frames.add(new Frame<>(Frame.SINGLE, n));
+        if (n.right != null) {
+          frames.add(new Frame<>(Frame.WHOLE, n.right));
+        }
+      } else {
+        return null;
+      }
+      for (Frame<E> frame : prefix.frames) {
+        prefix.remaining += frame.size();
+      }
+      remaining -= prefix.remaining;
+      return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+      return remaining;
+    }
+
+    @Override
+    public int characteristics() {
+      return Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL
+          | Spliterator.SIZED | Spliterator.SUBSIZED;
+    }
+
+    // elements are in natural order
+    @Override
+    public Comparator<? super E> getComparator() {
+      return null;
     }
   }
 
@@ -455,17 +1019,27 @@ public class BinarySearchTree<E extends Comparable<? super E>> {
    * pre: none
    */
   public void printTree() {
-    printTree(root, "");
-  }
-
-  private void printTree(BSTNode<E> n, String spaces) {
-    if (n != null) {
-      printTree(n.getRight(), spaces + "  ");
-      System.out.println(spaces + n.getData());
-      printTree(n.getLeft(), spaces + "  ");
+    // reverse in-order: right subtree, node, left subtree
+    BSTNode<E>[] stack = newPath();
+    int[] depths = new int[stack.length];
+    int top = 0;
+    BSTNode<E> node = root;
+    int depth = 0;
+    while (node != null || top > 0) {
+      while (node != null) {
+        stack[top] = node;
+        depths[top++] = depth++;
+        node = node.right;
+      }
+      node = stack[--top];
+      depth = depths[top];
+      System.out.println("  ".repeat(depth) + node.data);
+      node = node.left;
+      depth++;
     }
   }
 
+
   protected static class BSTNode<E extends Comparable<? super E>> {
     /*
      * Static inner class used to define the properties of a Node in a BST.
@@ -477,6 +1051,7 @@ public class BinarySearchTree<E extends Comparable<? super E>> {
      */
     private E data;
     private int height;
+    private int size; // nodes in this subtree
     private BSTNode<E> left;
     private BSTNode<E> right;
 
@@ -484,11 +1059,13 @@ public class BinarySearchTree<E extends Comparable<? super E>> {
     public BSTNode() {
       this(null);
       height = 0;
+      size = 1;
     }
 
     public BSTNode(E initValue) {
       this(null, initValue, null);
       height = 0;
+      size = 1;
     }
 
     public BSTNode(BSTNode<E> initLeft,
@@ -498,6 +1075,7 @@ public class BinarySearchTree<E extends Comparable<? super E>> {
       left = initLeft;
       right = initRight;
       height = 0;
+      size = 1;
     }
 
     public E getData() {
@@ -516,6 +1094,10 @@ public class BinarySearchTree<E extends Comparable<? super E>> {
       return height;
     }
 
+    public int getSize() {
+      return size;
+    }
+
     @SuppressWarnings("unused")
     public void setData(E theNewValue) {
       data = theNewValue;
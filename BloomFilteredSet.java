@@ -0,0 +1,300 @@
+/*
+ * An ISet decorator that answers most negative contains() calls from a
+ * blocked Bloom filter without touching the wrapped set.
+ *
+ * The filter is split into 512 bit blocks, the size of a cache line. An
+ * element's hash picks one block and all k of its bits are set inside that
+ * block, so a lookup costs a single cache miss however large the filter is.
+ * Blocking raises the false positive rate slightly over a classic Bloom
+ * filter of the same size, so the filter is made a little larger to
+ * make up for it.
+ */
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wraps an ISet and filters contains() calls through a Bloom filter.
+ * <br>
+ * The filter is kept in step with add(). Bloom filters cannot forget
+ * elements, so after remove() the filter still answers "maybe" for the
+ * removed elements; this is always correct, only slower. Call rebuild()
+ * once enough elements have been removed (see removalsSinceRebuild()) or
+ * the set has grown well past the size the filter was built for.
+ * <br>
+ * All calls go through to the wrapped set, which must not be changed
+ * directly afterwards. Changes are not thread safe. contains() may be
+ * called from many threads at once while no thread changes the set, if
+ * the wrapped set's contains() allows that too; its counters are
+ * LongAdders, so no lookups are lost from them.
+ *
+ * @param <E> The data type of the elements of this set.
+ */
+public class BloomFilteredSet<E> extends AbstractSet<E> {
+
+  private static final int BLOCK_BITS = 512;
+  private static final int BLOCK_WORDS = BLOCK_BITS / 64;
+  private static final int MAX_HASHES = 16;
+  private static final double BLOCK_OVERHEAD = 1.2;
+
+  private final ISet<E> set;
+  private final double fpp;
+  private int expectedSize;
+  private long[] words;
+  private int blocks;
+  private int hashes;
+
+  private int removalsSinceRebuild;
+  private final LongAdder trueNegatives = new LongAdder();
+  private final LongAdder falsePositives = new LongAdder();
+  private long rebuilds;
+
+  /**
+   * create a BloomFilteredSet in front of set. The filter is built from
+   * the elements set already holds.
+   * <br>
+   * pre: set != null, expectedSize >= 0, 0 < fpp < 1
+   *
+   * @param set          the set to wrap
+   * @param expectedSize the number of elements the filter is sized for
+   * @param fpp          the wanted false positive probability at that size
+   */
+  public BloomFilteredSet(ISet<E> set, int expectedSize, double fpp) {
+    if (set == null) {
+      throw new IllegalArgumentException("Set is null");
+    }
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("Invalid size.");
+    }
+    if (!(fpp > 0 && fpp < 1)) {
+      throw new IllegalArgumentException("Invalid false positive probability.");
+    }
+    this.set = set;
+    this.fpp = fpp;
+    this.expectedSize = expectedSize;
+    build();
+  }
+
+  /**
+   * create a BloomFilteredSet in front of set with a 1% false positive
+   * probability, sized for the elements set holds now.
+   *
+   * @param set != null
+   */
+  public BloomFilteredSet(ISet<E> set) {
+    this(set, set == null ? 0 : set.size(), 0.01);
+  }
+
+  @Override
+  public boolean add(E item) {
+    if (set.add(item)) {
+      put(item);
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public boolean contains(E item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Item is null");
+    }
+    if (!mightContain(item)) {
+      trueNegatives.increment();
+      return false;
+    }
+    if (set.contains(item)) {
+      return true;
+    }
+    falsePositives.increment();
+    return false;
+  }
+
+  @Override
+  public boolean remove(E item) {
+    if (set.remove(item)) {
+      removalsSinceRebuild++;
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public void clear() {
+    set.clear();
+    Arrays.fill(words, 0);
+    removalsSinceRebuild = 0;
+  }
+
+  @Override
+  public int size() {
+    return set.size();
+  }
+
+  @Override
+  public long fingerprint() {
+    return set.fingerprint();
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    Iterator<E> inner = set.iterator();
+    Iterator<E> itr = new Iterator<E>() {
+      @Override
+      public boolean hasNext() {
+        return inner.hasNext();
+      }
+
+      @Override
+      public E next() {
+        return inner.next();
+      }
+
+      @Override
+      public void remove() {
+        inner.remove();
+        removalsSinceRebuild++;
+      }
+    };
+    return itr;
+  }
+
+  // The set algebra is done by the wrapped set; results are not filtered.
+  @Override
+  public ISet<E> intersection(ISet<E> otherSet) {
+    return set.intersection(otherSet);
+  }
+
+  @Override
+  public ISet<E> union(ISet<E> otherSet) {
+    return set.union(otherSet);
+  }
+
+  @Override
+  public ISet<E> difference(ISet<E> otherSet) {
+    return set.difference(otherSet);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Object clone() {
+    ISet<E> empty = set instanceof AbstractSet ? (ISet<E>) ((AbstractSet<E>) set).clone() : new HashSet<>();
+    Object result = new BloomFilteredSet<>(empty, expectedSize, fpp);
+    return result;
+  }
+
+  /**
+   * Rebuild the filter from the current elements, dropping the bits of
+   * removed elements. The filter is resized if the set has outgrown the
+   * size it was built for. O(n).
+   * <br>
+   * post: removalsSinceRebuild() = 0
+   */
+  public void rebuild() {
+    expectedSize = Math.max(expectedSize, set.size());
+    build();
+    rebuilds++;
+  }
+
+  /**
+   * Return how many elements were removed since the filter was last built.
+   * Each one is a lookup the filter can no longer reject.
+   *
+   * @return the number of removals since the last rebuild
+   */
+  public int removalsSinceRebuild() {
+    return removalsSinceRebuild;
+  }
+
+  /**
+   * Return how many contains() calls the filter answered on its own.
+   *
+   * @return the number of lookups rejected by the filter
+   */
+  public long trueNegatives() {
+    return trueNegatives.sum();
+  }
+
+  /**
+   * Return how many contains() calls passed the filter but missed in the
+   * wrapped set.
+   *
+   * @return the number of false positives of the filter
+   */
+  public long falsePositives() {
+    return falsePositives.sum();
+  }
+
+  /**
+   * Return how many times rebuild() has been called.
+   *
+   * @return the number of rebuilds
+   */
+  public long rebuilds() {
+    return rebuilds;
+  }
+
+  /**
+   * Reset the true negative and false positive counters to 0.
+   */
+  public void resetCounters() {
+    trueNegatives.reset();
+    falsePositives.reset();
+  }
+
+  /*
+   * Sizes the filter for expectedSize elements with the usual formulas
+   * m = -n ln(p) / ln(2)^2 and k = (m / n) ln(2), then adds every element.
+   * m gets BLOCK_OVERHEAD extra to pay for the uneven load across blocks.
+   */
+  private void build() {
+    int n = Math.max(expectedSize, 1);
+    double bits = -n * Math.log(fpp) / (Math.log(2) * Math.log(2)) * BLOCK_OVERHEAD;
+    blocks = (int) Math.max(1, Math.min(Integer.MAX_VALUE / BLOCK_WORDS, Math.ceil(bits / BLOCK_BITS)));
+    hashes = (int) Math.max(1, Math.min(MAX_HASHES, Math.round(bits / BLOCK_OVERHEAD / n * Math.log(2))));
+    words = new long[blocks * BLOCK_WORDS];
+    for (E e : set) {
+      put(e);
+    }
+    removalsSinceRebuild = 0;
+  }
+
+  private void put(E item) {
+    long h = hash(item);
+    int base = block(h) * BLOCK_WORDS;
+    int h1 = (int) h;
+    int h2 = (int) (h >>> 32) | 1;
+    for (int i = 0; i < hashes; i++) {
+      int bit = (h1 + i * h2) & (BLOCK_BITS - 1);
+      words[base + (bit >>> 6)] |= 1L << bit;
+    }
+  }
+
+  private boolean mightContain(E item) {
+    long h = hash(item);
+    int base = block(h) * BLOCK_WORDS;
+    int h1 = (int) h;
+    int h2 = (int) (h >>> 32) | 1;
+    for (int i = 0; i < hashes; i++) {
+      int bit = (h1 + i * h2) & (BLOCK_BITS - 1);
+      if ((words[base + (bit >>> 6)] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // picks the block from a second mix of the hash, independent of the bits
+  private int block(long h) {
+    long g = (h ^ (h >>> 29)) * 0xBF58476D1CE4E5B9L;
+    return (int) (((g >>> 32) * blocks) >>> 32);
+  }
+
+  private static long hash(Object item) {
+    long h = item.hashCode() * 0x9E3779B97F4A7C15L;
+    h ^= h >>> 32;
+    h *= 0xD6E8FEB86659FD93L;
+    return h ^ (h >>> 32);
+  }
+}
@@ -0,0 +1,373 @@
+/*
+ * A BinarySearchTree shared by many reader threads and a few writers.
+ *
+ * Writers take the write lock of a StampedLock, so they are serialized and
+ * readers never see a rotation half done while holding a lock.
+ *
+ * The point lookups (isPresent, min, max, get, floor, ceiling, successor,
+ * predecessor, size and height) first walk the tree under an optimistic
+ * read stamp, which costs no more than a volatile read and writes no shared
+ * state, so readers do not slow each other down. If a writer ran in the
+ * meantime the stamp fails to validate and the lookup is repeated under
+ * the read lock. A walk racing with a rotation can see links from before
+ * and after it, which could send it around in a cycle, so optimistic walks
+ * give up after MAX_STEPS nodes. An AVL tree of at most 2^31 elements is
+ * less than 46 levels deep, so a walk that goes further is never valid.
+ *
+ * Everything else that reads (range queries, rank, counts, getAll,
+ * iteration) runs under the read lock, which readers share. Iterators and
+ * streams work on a copy taken under the read lock, so they never throw
+ * ConcurrentModificationException.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A thread safe BinarySearchTree whose lookups do not block each other.
+ * <br>
+ * Writes are serialized. Iterators work on a snapshot of the tree taken
+ * when they were created; their remove() removes the last value returned
+ * from the tree.
+ *
+ * @param <E> The data type of the elements of this tree.
+ */
+public class ConcurrentBinarySearchTree<E extends Comparable<? super E>> extends BinarySearchTree<E> {
+
+  private static final int MAX_STEPS = 64;
+  private static final Object RETRY = new Object(); // an optimistic walk gave up
+
+  private final StampedLock lock = new StampedLock();
+
+  /**
+   * create an empty ConcurrentBinarySearchTree
+   */
+  public ConcurrentBinarySearchTree() {
+    super();
+  }
+
+  @Override
+  public boolean add(E value) {
+    long stamp = lock.writeLock();
+    try {
+      return super.add(value);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public boolean remove(E value) {
+    long stamp = lock.writeLock();
+    try {
+      return super.remove(value);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public boolean isPresent(E value) {
+    if (value == null) {
+      throw new IllegalArgumentException("Value is null");
+    }
+    return read(() -> {
+      BSTNode<E> node = root();
+      for (int steps = 0; node != null; steps++) {
+        if (steps == MAX_STEPS) {
+          return RETRY;
+        }
+        int compare = value.compareTo(node.getData());
+        if (compare == 0) {
+          return true;
+        }
+        node = compare < 0 ? node.getLeft() : node.getRight();
+      }
+      return false;
+    }, () -> super.isPresent(value));
+  }
+
+  @Override
+  public int size() {
+    return read(super::size, super::size);
+  }
+
+  @Override
+  public int height() {
+    return read(super::height, super::height);
+  }
+
+  @Override
+  public E min() {
+    return read(() -> extreme(false), super::min);
+  }
+
+  @Override
+  public E max() {
+    return read(() -> extreme(true), super::max);
+  }
+
+  @Override
+  public E get(int kth) {
+    return read(() -> {
+      BSTNode<E> node = root();
+      if (kth < 0 || node == null || kth >= node.getSize()) {
+        return RETRY; // let the locked get report it
+      }
+      int k = kth;
+      for (int steps = 0; node != null && steps < MAX_STEPS; steps++) {
+        int leftSize = node.getLeft() == null ? 0 : node.getLeft().getSize();
+        if (k < leftSize) {
+          node = node.getLeft();
+        } else if (k == leftSize) {
+          return node.getData();
+        } else {
+          k -= leftSize + 1;
+          node = node.getRight();
+        }
+      }
+      return RETRY;
+    }, () -> super.get(kth));
+  }
+
+  @Override
+  public E floor(E value) {
+    return neighbour(value, true, true, () -> super.floor(value));
+  }
+
+  @Override
+  public E ceiling(E value) {
+    return neighbour(value, false, true, () -> super.ceiling(value));
+  }
+
+  @Override
+  public E successor(E value) {
+    return neighbour(value, false, false, () -> super.successor(value));
+  }
+
+  @Override
+  public E predecessor(E value) {
+    return neighbour(value, true, false, () -> super.predecessor(value));
+  }
+
+  @Override
+  public int rank(E value) {
+    return locked(() -> super.rank(value));
+  }
+
+  @Override
+  public int countLessThan(E value) {
+    return locked(() -> super.countLessThan(value));
+  }
+
+  @Override
+  public int countInRange(E lo, E hi) {
+    return locked(() -> super.countInRange(lo, hi));
+  }
+
+  @Override
+  public int numNodesAtDepth(int d) {
+    return locked(() -> super.numNodesAtDepth(d));
+  }
+
+  // not super.getAll, which would come back here through iterator()
+  @Override
+  public List<E> getAll() {
+    return locked(() -> {
+      List<E> result = new ArrayList<>(super.size());
+      super.iterator().forEachRemaining(result::add);
+      return result;
+    });
+  }
+
+  @Override
+  public List<E> getAllLessThan(E value) {
+    return locked(() -> super.getAllLessThan(value));
+  }
+
+  @Override
+  public List<E> getAllGreaterThan(E value) {
+    return locked(() -> super.getAllGreaterThan(value));
+  }
+
+  /**
+   * Return an iterator over a copy of the values of this tree between lo
+   * and hi, in ascending order. A null bound leaves that end open. The copy
+   * is taken under the read lock, so the iterator is not lazy. It does not
+   * support remove.
+   * <br>
+   * pre: lo <= hi if neither is null
+   *
+   * @param lo          the low end of the range, or null for no low end
+   * @param loInclusive true if a value equal to lo is in the range
+   * @param hi          the high end of the range, or null for no high end
+   * @param hiInclusive true if a value equal to hi is in the range
+   * @return an iterator over the values in the range
+   */
+  @Override
+  public Iterator<E> range(E lo, boolean loInclusive, E hi, boolean hiInclusive) {
+    List<E> result = locked(() -> {
+      List<E> values = new ArrayList<>();
+      super.range(lo, loInclusive, hi, hiInclusive).forEachRemaining(values::add);
+      return values;
+    });
+    return Collections.unmodifiableList(result).iterator();
+  }
+
+  // action runs after the read lock is released, so it may change the tree
+  @Override
+  public void forEachInRange(E lo, E hi, Consumer<? super E> action) {
+    if (action == null) {
+      throw new IllegalArgumentException("Value is null.");
+    }
+    List<E> values = new ArrayList<>();
+    long stamp = lock.readLock();
+    try {
+      super.forEachInRange(lo, hi, values::add);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+    values.forEach(action);
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return snapshotIterator(getAll());
+  }
+
+  @Override
+  public Iterator<E> descendingIterator() {
+    List<E> snapshot = getAll();
+    Collections.reverse(snapshot);
+    return snapshotIterator(snapshot);
+  }
+
+  @Override
+  public Spliterator<E> spliterator() {
+    return Spliterators.spliterator(getAll(), Spliterator.ORDERED | Spliterator.SORTED
+        | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+  }
+
+  @Override
+  public void printTree() {
+    long stamp = lock.readLock();
+    try {
+      super.printTree();
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /*
+   * Runs optimistic without a lock and returns its result if no writer
+   * got in the way, otherwise runs locked under the read lock. optimistic
+   * returns RETRY to give up. It may also throw on a torn read, such as a
+   * node whose fields are not visible yet; locked runs again and throws
+   * for real if the exception was genuine.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> T read(Supplier<?> optimistic, Supplier<T> locked) {
+    long stamp = lock.tryOptimisticRead();
+    if (stamp != 0) {
+      try {
+        Object result = optimistic.get();
+        if (result != RETRY && lock.validate(stamp)) {
+          return (T) result;
+        }
+      } catch (RuntimeException e) {
+        // fall back to the read lock
+      }
+    }
+    return locked(locked);
+  }
+
+  private <T> T locked(Supplier<T> reader) {
+    long stamp = lock.readLock();
+    try {
+      return reader.get();
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  // optimistic walk for min and max
+  private Object extreme(boolean right) {
+    BSTNode<E> node = root();
+    if (node == null) {
+      return RETRY; // let the locked min or max report it
+    }
+    for (int steps = 0; steps < MAX_STEPS; steps++) {
+      BSTNode<E> next = right ? node.getRight() : node.getLeft();
+      if (next == null) {
+        return node.getData();
+      }
+      node = next;
+    }
+    return RETRY;
+  }
+
+  // floor, ceiling, predecessor or successor, optimistic first
+  private E neighbour(E value, boolean below, boolean inclusive, Supplier<E> locked) {
+    if (value == null) {
+      throw new IllegalArgumentException("Value is null.");
+    }
+    return read(() -> {
+      E result = null;
+      BSTNode<E> node = root();
+      for (int steps = 0; node != null; steps++) {
+        if (steps == MAX_STEPS) {
+          return RETRY;
+        }
+        int compare = node.getData().compareTo(value);
+        boolean candidate = below ? compare < 0 : compare > 0;
+        if (candidate || (compare == 0 && inclusive)) {
+          result = node.getData(); // best so far, look for a closer one
+          node = below ? node.getRight() : node.getLeft();
+        } else {
+          node = below ? node.getLeft() : node.getRight();
+        }
+      }
+      return result;
+    }, locked);
+  }
+
+  // iterates over snapshot; remove() removes the last value from the tree
+  private Iterator<E> snapshotIterator(List<E> snapshot) {
+    Iterator<E> itr = new Iterator<E>() {
+      private int index;
+      private boolean removeOK;
+
+      @Override
+      public boolean hasNext() {
+        return index < snapshot.size();
+      }
+
+      @Override
+      public E next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        removeOK = true;
+        return snapshot.get(index++);
+      }
+
+      @Override
+      public void remove() {
+        if (!removeOK) {
+          throw new IllegalStateException();
+        }
+        ConcurrentBinarySearchTree.this.remove(snapshot.get(index - 1));
+        removeOK = false;
+      }
+    };
+    return itr;
+  }
+}
@@ -0,0 +1,359 @@
+/*
+ * A thread safe hash implementation of ISet.
+ *
+ * The set is split into a fixed number of stripes, each a small chained
+ * hash table guarded by its own lock. Writers only lock the stripe their
+ * element hashes to, so writers on different stripes never wait for each
+ * other. Readers take no locks at all: the bins are read through an
+ * AtomicReferenceArray and the chain links are volatile, and a writer never
+ * changes a chain in a way that would strand a reader walking it.
+ */
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A hash based ISet that may be shared between threads.
+ * <br>
+ * add, remove and contains may be called concurrently from any number of
+ * threads. Iterators are weakly consistent: they never throw
+ * ConcurrentModificationException, return every element that was present
+ * for the whole iteration exactly once, and may or may not return elements
+ * added or removed while they run. size() is likewise a moving estimate
+ * while writers are active.
+ *
+ * @param <E> The data type of the elements of this set.
+ */
+public class ConcurrentHashSet<E> extends AbstractSet<E> {
+
+  private static final int DEFAULT_STRIPES = 16;
+  private static final int INITIAL_BINS = 8;
+
+  private final Stripe<E>[] stripes;
+  private final int stripeShift;
+  private final LongAdder size = new LongAdder();
+
+  /**
+   * create an empty ConcurrentHashSet with the default number of stripes.
+   */
+  public ConcurrentHashSet() {
+    this(DEFAULT_STRIPES);
+  }
+
+  /**
+   * create an empty ConcurrentHashSet.
+   * <br>
+   * pre: concurrencyLevel > 0
+   *
+   * @param concurrencyLevel the expected number of concurrent writers.
+   *                         It is rounded up to a power of two and used as
+   *                         the number of independently locked stripes.
+   */
+  @SuppressWarnings("unchecked")
+  public ConcurrentHashSet(int concurrencyLevel) {
+    if (concurrencyLevel <= 0) {
+      throw new IllegalArgumentException("Invalid concurrency level.");
+    }
+    int bits = 0;
+    while ((1 << bits) < concurrencyLevel && bits < 16) {
+      bits++;
+    }
+    stripes = (Stripe<E>[]) new Stripe<?>[1 << bits];
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new Stripe<>();
+    }
+    stripeShift = 32 - bits;
+  }
+
+  @Override
+  public boolean add(E item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Invalid item.");
+    }
+    int hash = hash(item);
+    if (stripeFor(hash).add(item, hash)) {
+      size.increment();
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public boolean contains(E item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Item is null");
+    }
+    int hash = hash(item);
+    return stripeFor(hash).contains(item, hash);
+  }
+
+  @Override
+  public boolean remove(E item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Item is null");
+    }
+    int hash = hash(item);
+    if (stripeFor(hash).remove(item, hash)) {
+      size.decrement();
+      return true;
+    }
+    return false;
+  }
+
+  // Stripes are emptied one at a time; elements added meanwhile may survive.
+  @Override
+  public void clear() {
+    for (Stripe<E> stripe : stripes) {
+      size.add(-stripe.clear());
+    }
+  }
+
+  @Override
+  public int size() {
+    long sum = size.sum();
+    return sum < 0 ? 0 : (int) Math.min(sum, Integer.MAX_VALUE);
+  }
+
+  /*
+   * Each stripe keeps the sum for its own elements under its lock; this
+   * adds the stripes up, O(stripes). Like size() it is exact only while
+   * no writer is running.
+   */
+  @Override
+  public long fingerprint() {
+    long result = 0;
+    for (Stripe<E> stripe : stripes) {
+      result += stripe.fingerprint;
+    }
+    return result;
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    Iterator<E> itr = new Iterator<E>() {
+      private int stripe = -1;
+      private AtomicReferenceArray<Node<E>> bins;
+      private int bin;
+      private Node<E> next;
+      private E last;
+      private boolean removeOK;
+
+      {
+        advance();
+      }
+
+      // moves next to the following node, switching bins and stripes as needed
+      private void advance() {
+        if (next != null) {
+          next = next.next;
+        }
+        while (next == null) {
+          if (bins == null || bin == bins.length()) {
+            if (++stripe == stripes.length) {
+              return;
+            }
+            bins = stripes[stripe].bins;
+            bin = 0;
+          } else {
+            next = bins.get(bin++);
+          }
+        }
+      }
+
+      @Override
+      public boolean hasNext() {
+        return next != null;
+      }
+
+      @Override
+      public E next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        last = next.item;
+        advance();
+        removeOK = true;
+        return last;
+      }
+
+      @Override
+      public void remove() {
+        if (!removeOK) {
+          throw new IllegalStateException();
+        }
+        ConcurrentHashSet.this.remove(last);
+        removeOK = false;
+      }
+    };
+    return itr;
+  }
+
+  @Override
+  public ISet<E> intersection(ISet<E> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    ISet<E> result = new ConcurrentHashSet<>(stripes.length);
+    for (E e : this) {
+      if (otherSet.contains(e)) {
+        result.add(e);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public ISet<E> union(ISet<E> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    ISet<E> result = new ConcurrentHashSet<>(stripes.length);
+    result.addAll(this);
+    result.addAll(otherSet);
+    return result;
+  }
+
+  @Override
+  public ISet<E> difference(ISet<E> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    ISet<E> result = new ConcurrentHashSet<>(stripes.length);
+    for (E e : this) {
+      if (!otherSet.contains(e)) {
+        result.add(e);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public Object clone() {
+    Object result = new ConcurrentHashSet<>(stripes.length);
+    return result;
+  }
+
+  // the high bits pick the stripe, the low bits pick the bin within it
+  private Stripe<E> stripeFor(int hash) {
+    return stripes[stripeShift == 32 ? 0 : hash >>> stripeShift];
+  }
+
+  private static int hash(Object item) {
+    int h = item.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private static final class Node<E> {
+    final E item;
+    final int hash;
+    volatile Node<E> next;
+
+    Node(E item, int hash, Node<E> next) {
+      this.item = item;
+      this.hash = hash;
+      this.next = next;
+    }
+  }
+
+  /*
+   * One independently locked chained hash table. Only the thread holding
+   * the lock changes count, fingerprint, bins or any chain; readers go
+   * through the volatile bins reference.
+   */
+  @SuppressWarnings("serial")
+  private static final class Stripe<E> extends ReentrantLock {
+    volatile AtomicReferenceArray<Node<E>> bins = new AtomicReferenceArray<>(INITIAL_BINS);
+    volatile long fingerprint; // sum of ISet.fingerprintOf over this stripe
+    private int count;
+
+    boolean contains(E item, int hash) {
+      AtomicReferenceArray<Node<E>> tab = bins;
+      for (Node<E> n = tab.get(hash & (tab.length() - 1)); n != null; n = n.next) {
+        if (n.hash == hash && n.item.equals(item)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    boolean add(E item, int hash) {
+      lock();
+      try {
+        AtomicReferenceArray<Node<E>> tab = bins;
+        int index = hash & (tab.length() - 1);
+        Node<E> head = tab.get(index);
+        for (Node<E> n = head; n != null; n = n.next) {
+          if (n.hash == hash && n.item.equals(item)) {
+            return false;
+          }
+        }
+        tab.set(index, new Node<>(item, hash, head));
+        fingerprint += ISet.fingerprintOf(item);
+        if (++count > tab.length() * 3 / 4) {
+          grow(tab);
+        }
+        return true;
+      } finally {
+        unlock();
+      }
+    }
+
+    boolean remove(E item, int hash) {
+      lock();
+      try {
+        AtomicReferenceArray<Node<E>> tab = bins;
+        int index = hash & (tab.length() - 1);
+        Node<E> prev = null;
+        for (Node<E> n = tab.get(index); n != null; prev = n, n = n.next) {
+          if (n.hash == hash && n.item.equals(item)) {
+            // a reader standing on n still reaches the rest of the chain
+            if (prev == null) {
+              tab.set(index, n.next);
+            } else {
+              prev.next = n.next;
+            }
+            count--;
+            fingerprint -= ISet.fingerprintOf(n.item);
+            return true;
+          }
+        }
+        return false;
+      } finally {
+        unlock();
+      }
+    }
+
+    // empties this stripe and returns how many elements it held
+    int clear() {
+      lock();
+      try {
+        int removed = count;
+        bins = new AtomicReferenceArray<>(INITIAL_BINS);
+        count = 0;
+        fingerprint = 0;
+        return removed;
+      } finally {
+        unlock();
+      }
+    }
+
+    /*
+     * Rehashes into a table twice the size. The nodes are copied rather than
+     * relinked so readers still walking the old table see intact chains.
+     */
+    private void grow(AtomicReferenceArray<Node<E>> old) {
+      AtomicReferenceArray<Node<E>> tab = new AtomicReferenceArray<>(old.length() * 2);
+      int mask = tab.length() - 1;
+      for (int i = 0; i < old.length(); i++) {
+        for (Node<E> n = old.get(i); n != null; n = n.next) {
+          int index = n.hash & mask;
+          tab.set(index, new Node<>(n.item, n.hash, tab.get(index)));
+        }
+      }
+      bins = tab;
+    }
+  }
+}
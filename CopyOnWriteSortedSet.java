@@ -0,0 +1,450 @@
+/*
+ * A sorted ISet for data that is read all the time and written rarely.
+ *
+ * The elements live in a sorted array that is never changed once it is
+ * published. Readers load the volatile snapshot reference once and binary
+ * search the array without any locking, so they never wait on each other
+ * or on a writer. Writers take a lock, build a complete new array and
+ * publish it with a single volatile write; a reader sees either the old
+ * array or the new one, never a half-written one.
+ *
+ * Every write costs O(n) time and an O(n) allocation, so batch changes
+ * with applyAll (or addAll, removeAll, retainAll, removeIf, which all
+ * rebuild once) instead of calling add or remove in a loop.
+ */
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+
+/**
+ * A thread safe ISet whose elements are kept in ascending order in an
+ * immutable array that is replaced on every change.
+ * <br>
+ * contains, min, max, floor and ceiling are lock-free O(log n). Writes are
+ * serialized and O(n). Iterators and spliterators work on the snapshot
+ * taken when they were created: they never see later changes, never throw
+ * ConcurrentModificationException, and do not support remove.
+ *
+ * @param <E> The data type of the elements of this set.
+ */
+public class CopyOnWriteSortedSet<E extends Comparable<? super E>> extends AbstractSet<E> {
+
+  private static final Object[] EMPTY = new Object[0];
+
+  private final Object writeLock = new Object();
+  private volatile Snapshot snapshot;
+
+  /**
+   * create an empty CopyOnWriteSortedSet
+   */
+  public CopyOnWriteSortedSet() {
+    snapshot = new Snapshot(EMPTY);
+  }
+
+  /**
+   * create a CopyOnWriteSortedSet holding the elements of other.
+   * <br>
+   * pre: other != null
+   *
+   * @param other the elements of the new set
+   */
+  public CopyOnWriteSortedSet(ISet<E> other) {
+    if (other == null) {
+      throw new IllegalArgumentException("Set is null");
+    }
+    snapshot = new Snapshot(sortedArray(other));
+  }
+
+  // wraps an array that is already sorted and free of duplicates
+  private CopyOnWriteSortedSet(Object[] sorted) {
+    snapshot = new Snapshot(sorted);
+  }
+
+  @Override
+  public boolean add(E item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Invalid item.");
+    }
+    synchronized (writeLock) {
+      Object[] current = snapshot.elements;
+      int index = Arrays.binarySearch(current, item);
+      if (index >= 0) {
+        return false;
+      }
+      index = -(index + 1);
+      Object[] next = new Object[current.length + 1];
+      System.arraycopy(current, 0, next, 0, index);
+      next[index] = item;
+      System.arraycopy(current, index, next, index + 1, current.length - index);
+      snapshot = new Snapshot(next, snapshot.fingerprint + ISet.fingerprintOf(item));
+      return true;
+    }
+  }
+
+  @Override
+  public boolean remove(E item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Item is null");
+    }
+    synchronized (writeLock) {
+      Object[] current = snapshot.elements;
+      int index = Arrays.binarySearch(current, item);
+      if (index < 0) {
+        return false;
+      }
+      Object[] next = new Object[current.length - 1];
+      System.arraycopy(current, 0, next, 0, index);
+      System.arraycopy(current, index + 1, next, index, next.length - index);
+      snapshot = new Snapshot(next, snapshot.fingerprint - ISet.fingerprintOf(current[index]));
+      return true;
+    }
+  }
+
+  /**
+   * Add every element of adds and then remove every element of removes,
+   * building and publishing one new array. Readers see either none of the
+   * changes or all of them. An element in both sets ends up removed.
+   * O(n + a log a + r log r) for a adds and r removes.
+   * <br>
+   * pre: adds != null, removes != null
+   *
+   * @param adds    the elements to add
+   * @param removes the elements to remove
+   * @return true if this set changed as a result of this operation,
+   *         false otherwise
+   */
+  public boolean applyAll(ISet<E> adds, ISet<E> removes) {
+    if (adds == null || removes == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    Object[] added = sortedArray(adds);
+    Object[] removed = sortedArray(removes);
+    synchronized (writeLock) {
+      Object[] current = snapshot.elements;
+      Object[] next = new Object[current.length + added.length];
+      int n = 0;
+      int i = 0;
+      int j = 0;
+      int k = 0;
+      // merge current and added, skipping anything in removed
+      while (i < current.length || j < added.length) {
+        Object e;
+        if (j == added.length) {
+          e = current[i++];
+        } else if (i == current.length) {
+          e = added[j++];
+        } else {
+          int c = compare(current[i], added[j]);
+          e = c <= 0 ? current[i++] : added[j++];
+          if (c == 0) {
+            j++; // in both, keep the element already in the set
+          }
+        }
+        while (k < removed.length && compare(removed[k], e) < 0) {
+          k++;
+        }
+        if (k == removed.length || compare(removed[k], e) != 0) {
+          next[n++] = e;
+        }
+      }
+      return publish(next, n);
+    }
+  }
+
+  @Override
+  public boolean addAll(ISet<E> otherSet) {
+    return applyAll(otherSet, new CopyOnWriteSortedSet<>());
+  }
+
+  @Override
+  public boolean removeAll(ISet<E> otherSet) {
+    return applyAll(new CopyOnWriteSortedSet<>(), otherSet);
+  }
+
+  @Override
+  public boolean retainAll(ISet<E> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    return removeIf(e -> !otherSet.contains(e));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public boolean removeIf(Predicate<? super E> filter) {
+    if (filter == null) {
+      throw new IllegalArgumentException("Filter is null");
+    }
+    synchronized (writeLock) {
+      Object[] current = snapshot.elements;
+      Object[] next = new Object[current.length];
+      int n = 0;
+      for (Object e : current) {
+        if (!filter.test((E) e)) {
+          next[n++] = e;
+        }
+      }
+      return publish(next, n);
+    }
+  }
+
+  @Override
+  public void clear() {
+    synchronized (writeLock) {
+      snapshot = new Snapshot(EMPTY);
+    }
+  }
+
+  @Override
+  public boolean contains(E item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Item is null");
+    }
+    return Arrays.binarySearch(snapshot.elements, item) >= 0;
+  }
+
+  @Override
+  public int size() {
+    return snapshot.elements.length;
+  }
+
+  // stored with each snapshot, O(1)
+  @Override
+  public long fingerprint() {
+    return snapshot.fingerprint;
+  }
+
+  /**
+   * Return the smallest element in this set.
+   * <br>
+   * pre: size() != 0
+   *
+   * @return the smallest element in this set
+   */
+  @SuppressWarnings("unchecked")
+  public E min() {
+    Object[] current = snapshot.elements;
+    if (current.length == 0) {
+      throw new IllegalStateException("Set is Empty");
+    }
+    return (E) current[0];
+  }
+
+  /**
+   * Return the largest element in this set.
+   * <br>
+   * pre: size() != 0
+   *
+   * @return the largest element in this set
+   */
+  @SuppressWarnings("unchecked")
+  public E max() {
+    Object[] current = snapshot.elements;
+    if (current.length == 0) {
+      throw new IllegalStateException("Set is Empty");
+    }
+    return (E) current[current.length - 1];
+  }
+
+  /**
+   * Return the largest element of this set less than or equal to item.
+   * <br>
+   * pre: item != null
+   *
+   * @param item the bound
+   * @return the greatest element <= item, or null if there is none
+   */
+  @SuppressWarnings("unchecked")
+  public E floor(E item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Item is null");
+    }
+    Object[] current = snapshot.elements;
+    int index = Arrays.binarySearch(current, item);
+    index = index >= 0 ? index : -(index + 1) - 1;
+    return index >= 0 ? (E) current[index] : null;
+  }
+
+  /**
+   * Return the smallest element of this set greater than or equal to item.
+   * <br>
+   * pre: item != null
+   *
+   * @param item the bound
+   * @return the least element >= item, or null if there is none
+   */
+  @SuppressWarnings("unchecked")
+  public E ceiling(E item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Item is null");
+    }
+    Object[] current = snapshot.elements;
+    int index = Arrays.binarySearch(current, item);
+    index = index >= 0 ? index : -(index + 1);
+    return index < current.length ? (E) current[index] : null;
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    Object[] elements = snapshot.elements;
+    Iterator<E> itr = new Iterator<E>() {
+      private int current;
+
+      @Override
+      public boolean hasNext() {
+        return current < elements.length;
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public E next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return (E) elements[current++];
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException("Snapshot iterators do not support remove");
+      }
+    };
+    return itr;
+  }
+
+  @Override
+  public Spliterator<E> spliterator() {
+    return Spliterators.spliterator(snapshot.elements,
+        Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT
+            | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+  }
+
+  @Override
+  public SetView<E> view() {
+    return SetView.sorted(this, Comparator.naturalOrder());
+  }
+
+  // The results are new CopyOnWriteSortedSets built from one snapshot.
+  @Override
+  @SuppressWarnings("unchecked")
+  public ISet<E> intersection(ISet<E> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    Object[] current = snapshot.elements;
+    Object[] result = new Object[Math.min(current.length, otherSet.size())];
+    int n = 0;
+    for (Object e : current) {
+      if (n == result.length) {
+        break;
+      }
+      if (otherSet.contains((E) e)) {
+        result[n++] = e;
+      }
+    }
+    return new CopyOnWriteSortedSet<>(Arrays.copyOf(result, n));
+  }
+
+  @Override
+  public ISet<E> union(ISet<E> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    CopyOnWriteSortedSet<E> result = new CopyOnWriteSortedSet<>(snapshot.elements);
+    result.applyAll(otherSet, new CopyOnWriteSortedSet<>());
+    return result;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public ISet<E> difference(ISet<E> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    Object[] current = snapshot.elements;
+    Object[] result = new Object[current.length];
+    int n = 0;
+    for (Object e : current) {
+      if (!otherSet.contains((E) e)) {
+        result[n++] = e;
+      }
+    }
+    return new CopyOnWriteSortedSet<>(Arrays.copyOf(result, n));
+  }
+
+  @Override
+  public Object clone() {
+    Object result = new CopyOnWriteSortedSet<E>();
+    return result;
+  }
+
+  // publishes next[0, n) unless it holds the same elements as now
+  private boolean publish(Object[] next, int n) {
+    Object[] current = snapshot.elements;
+    if (n == current.length && Arrays.equals(current, 0, n, next, 0, n)) {
+      return false;
+    }
+    snapshot = new Snapshot(n == next.length ? next : Arrays.copyOf(next, n));
+    return true;
+  }
+
+  @SuppressWarnings("unchecked")
+  private int compare(Object a, Object b) {
+    return ((E) a).compareTo((E) b);
+  }
+
+  // the elements of set sorted with duplicates (by compareTo) removed
+  @SuppressWarnings("unchecked")
+  private static <E extends Comparable<? super E>> Object[] sortedArray(ISet<E> set) {
+    Object[] result = new Object[set.size()];
+    int n = 0;
+    for (E e : set) {
+      if (e == null) {
+        throw new IllegalArgumentException("Invalid item.");
+      }
+      if (n == result.length) {
+        result = Arrays.copyOf(result, n * 2 + 1); // set grew meanwhile
+      }
+      result[n++] = e;
+    }
+    Arrays.sort(result, 0, n);
+    int kept = 0;
+    for (int i = 0; i < n; i++) {
+      if (kept == 0 || ((E) result[i]).compareTo((E) result[kept - 1]) != 0) {
+        result[kept++] = result[i];
+      }
+    }
+    return kept == result.length ? result : Arrays.copyOf(result, kept);
+  }
+
+  /*
+   * One published state of the set. Never changed after construction, so
+   * a reader holding one needs no further synchronization.
+   */
+  private static final class Snapshot {
+    private final Object[] elements;
+    private final long fingerprint;
+
+    Snapshot(Object[] elements) {
+      this(elements, sum(elements));
+    }
+
+    Snapshot(Object[] elements, long fingerprint) {
+      this.elements = elements;
+      this.fingerprint = fingerprint;
+    }
+
+    private static long sum(Object[] elements) {
+      long result = 0;
+      for (Object e : elements) {
+        result += ISet.fingerprintOf(e);
+      }
+      return result;
+    }
+  }
+}
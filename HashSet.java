@@ -0,0 +1,503 @@
+/*
+ * An open addressing implementation of ISet.
+ *
+ * Elements are hashed into a power of two sized table and collisions are
+ * resolved with linear probing. Removed elements leave a tombstone behind
+ * so probe sequences (and live iterators) are never disturbed.
+ */
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A hash based implementation of the ISet interface.
+ * Elements are not in any particular order.
+ * <br>
+ * add, contains and remove run in expected O(1) time, so this set can be
+ * used anywhere an UnsortedSet is constructed today.
+ * <br>
+ * When the table fills past its load factor a larger table is allocated
+ * and the old one is migrated a few slots at a time by later add and remove
+ * calls, so no single operation pays for the whole rehash.
+ *
+ * @param <E> The data type of the elements of this set.
+ */
+public class HashSet<E> extends AbstractSet<E> {
+
+  private static final int DEFAULT_CAPACITY = 16;
+  private static final float DEFAULT_LOAD_FACTOR = 0.5f;
+
+  // number of old table slots migrated per add or remove while resizing
+  private static final int MIGRATION_STEP = 8;
+
+  // marks a slot whose element was removed (or migrated)
+  private static final Object TOMBSTONE = new Object();
+
+  // compare and set on table slots, for insertDistinct
+  private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Object[].class);
+
+  private final float loadFactor;
+  private Object[] table;
+  private int size;
+  private int used; // live elements + tombstones in table
+  private long fingerprint; // sum of ISet.fingerprintOf over the elements
+  private int threshold;
+
+  // non null only while an incremental resize is in progress
+  private Object[] oldTable;
+  private int migrated; // next slot of oldTable to migrate
+  private int oldSize; // live elements still in oldTable
+
+  /**
+   * create an empty HashSet with the default capacity and load factor.
+   */
+  public HashSet() {
+    this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+  }
+
+  /**
+   * create an empty HashSet able to hold expectedSize elements
+   * before it has to resize.
+   * <br>
+   * pre: expectedSize >= 0
+   *
+   * @param expectedSize the number of elements expected in this set
+   */
+  public HashSet(int expectedSize) {
+    this(expectedSize, DEFAULT_LOAD_FACTOR);
+  }
+
+  /**
+   * create an empty HashSet able to hold expectedSize elements
+   * before it has to resize.
+   * <br>
+   * pre: expectedSize >= 0, 0 < loadFactor < 1
+   *
+   * @param expectedSize the number of elements expected in this set
+   * @param loadFactor   the fraction of the table that may be occupied
+   *                     before the table grows
+   */
+  public HashSet(int expectedSize, float loadFactor) {
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("Invalid size.");
+    }
+    if (!(loadFactor > 0 && loadFactor < 1)) {
+      throw new IllegalArgumentException("Invalid load factor.");
+    }
+    this.loadFactor = loadFactor;
+    table = new Object[tableSizeFor((int) Math.ceil(expectedSize / loadFactor))];
+    threshold = (int) (table.length * loadFactor);
+  }
+
+  /**
+   * create a HashSet out of another set.
+   *
+   * @param other != null
+   */
+  public HashSet(ISet<E> other) {
+    this(other.size());
+    addAll(other);
+  }
+
+  @Override
+  public boolean add(E item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Invalid item.");
+    }
+    migrateStep();
+    if (oldTable != null && indexOf(oldTable, item) >= 0) {
+      return false;
+    }
+    int hash = hash(item);
+    int mask = table.length - 1;
+    int index = hash & mask;
+    int firstFree = -1;
+    Object current;
+    while ((current = table[index]) != null) {
+      if (current == TOMBSTONE) {
+        if (firstFree < 0) {
+          firstFree = index;
+        }
+      } else if (current.equals(item)) {
+        return false;
+      }
+      index = (index + 1) & mask;
+    }
+    if (firstFree >= 0) {
+      table[firstFree] = item; // reuse the tombstone, used does not change
+    } else {
+      table[index] = item;
+      used++;
+    }
+    size++;
+    fingerprint += ISet.fingerprintOf(item);
+    if (used > threshold) {
+      startResize();
+    }
+    return true;
+  }
+
+  @Override
+  public boolean contains(E item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Item is null");
+    }
+    return indexOf(table, item) >= 0
+        || (oldTable != null && indexOf(oldTable, item) >= 0);
+  }
+
+  @Override
+  public boolean remove(E item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Item is null");
+    }
+    migrateStep();
+    return removeNoMigrate(item);
+  }
+
+  // removes item without advancing the migration, safe to call from iterators
+  private boolean removeNoMigrate(E item) {
+    int index = indexOf(table, item);
+    if (index >= 0) {
+      table[index] = TOMBSTONE;
+      size--;
+      fingerprint -= ISet.fingerprintOf(item);
+      return true;
+    }
+    if (oldTable != null) {
+      index = indexOf(oldTable, item);
+      if (index >= 0) {
+        oldTable[index] = TOMBSTONE;
+        oldSize--;
+        size--;
+        fingerprint -= ISet.fingerprintOf(item);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void clear() {
+    table = new Object[table.length];
+    oldTable = null;
+    size = 0;
+    used = 0;
+    fingerprint = 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  // kept up to date by add and remove, O(1)
+  @Override
+  public long fingerprint() {
+    return fingerprint;
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    Iterator<E> itr = new Iterator<E>() {
+      // walk the old table (if any) first, then the current table
+      private Object[] slots = oldTable != null ? oldTable : table;
+      private int current = advance(0);
+      private E last;
+      private boolean removeOK;
+
+      // returns the index of the next live slot at or after index
+      private int advance(int index) {
+        while (true) {
+          while (index < slots.length
+              && (slots[index] == null || slots[index] == TOMBSTONE)) {
+            index++;
+          }
+          if (index < slots.length || slots == table) {
+            return index;
+          }
+          slots = table;
+          index = 0;
+        }
+      }
+
+      @Override
+      public boolean hasNext() {
+        return current < slots.length;
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public E next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        last = (E) slots[current];
+        current = advance(current + 1);
+        removeOK = true;
+        return last;
+      }
+
+      @Override
+      public void remove() {
+        if (!removeOK) {
+          throw new IllegalStateException();
+        }
+        removeNoMigrate(last);
+        removeOK = false;
+      }
+    };
+    return itr;
+  }
+
+  /*
+   * Splits by slot range: the old table (while a resize is in progress)
+   * and the current table form one index space that is halved on every
+   * split. Sizes are estimated from the share of the slots a piece covers.
+   */
+  @Override
+  public Spliterator<E> spliterator() {
+    Object[] first = oldTable != null ? oldTable : new Object[0];
+    return new SlotSpliterator<>(first, table, 0, first.length + table.length, size);
+  }
+
+  /*
+   * Bulk loading from several threads at once, used by ParallelSetOps.
+   * The caller creates the set with HashSet(expectedSize), then calls
+   * insertDistinct from any number of threads with elements that are all
+   * different from each other and from the set's elements, no more than
+   * expectedSize in total, and with no other method running meanwhile.
+   * Once every insert has happened-before it (for example through
+   * ForkJoinTask.join), one thread calls insertedDistinct with the count
+   * and the sum of ISet.fingerprintOf of the inserted elements.
+   */
+  void insertDistinct(E item) {
+    Object[] slots = table;
+    int mask = slots.length - 1;
+    int index = hash(item) & mask;
+    while (!SLOT.compareAndSet(slots, index, (Object) null, (Object) item)) {
+      index = (index + 1) & mask; // no equals check, the caller promised distinct
+    }
+  }
+
+  // the bookkeeping for a round of insertDistinct calls
+  void insertedDistinct(int count, long fingerprintSum) {
+    size += count;
+    used += count;
+    fingerprint += fingerprintSum;
+  }
+
+  @Override
+  public ISet<E> intersection(ISet<E> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    // probe the larger set with the elements of the smaller one
+    ISet<E> small = this;
+    ISet<E> large = otherSet;
+    if (otherSet.size() < size) {
+      small = otherSet;
+      large = this;
+    }
+    HashSet<E> result = new HashSet<>(small.size(), loadFactor);
+    for (E e : small) {
+      if (large.contains(e)) {
+        result.add(e);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public ISet<E> union(ISet<E> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    HashSet<E> result = new HashSet<>(size + otherSet.size(), loadFactor);
+    for (E e : this) {
+      result.add(e);
+    }
+    for (E e : otherSet) {
+      result.add(e);
+    }
+    return result;
+  }
+
+  @Override
+  public ISet<E> difference(ISet<E> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    HashSet<E> result = new HashSet<>(size, loadFactor);
+    for (E e : this) {
+      if (!otherSet.contains(e)) {
+        result.add(e);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public Object clone() {
+    Object result = new HashSet<>(0, loadFactor);
+    return result;
+  }
+
+  // returns the slot holding item in slots, or -1 if item is not present
+  private static int indexOf(Object[] slots, Object item) {
+    int mask = slots.length - 1;
+    int index = hash(item) & mask;
+    Object current;
+    while ((current = slots[index]) != null) {
+      if (current != TOMBSTONE && current.equals(item)) {
+        return index;
+      }
+      index = (index + 1) & mask;
+    }
+    return -1;
+  }
+
+  /*
+   * Allocates the next table and starts migrating the current one into it.
+   * The new table is sized from the live elements, so a table that is full
+   * of tombstones is simply rebuilt at the same capacity.
+   */
+  private void startResize() {
+    if (oldTable != null) {
+      finishMigration(); // the last resize has not caught up yet
+    }
+    int capacity = tableSizeFor((int) Math.ceil(2L * size / loadFactor));
+    capacity = Math.max(capacity, table.length);
+    oldTable = table;
+    oldSize = size;
+    migrated = 0;
+    table = new Object[capacity];
+    used = 0;
+    threshold = (int) (capacity * loadFactor);
+  }
+
+  // moves the next few slots of the old table into the current table
+  private void migrateStep() {
+    if (oldTable != null) {
+      migrate(MIGRATION_STEP);
+    }
+  }
+
+  private void finishMigration() {
+    migrate(oldTable.length);
+  }
+
+  private void migrate(int slots) {
+    int stop = Math.min(oldTable.length, migrated + slots);
+    int mask = table.length - 1;
+    for (; migrated < stop; migrated++) {
+      Object item = oldTable[migrated];
+      if (item != null && item != TOMBSTONE) {
+        oldTable[migrated] = TOMBSTONE;
+        oldSize--;
+        int index = hash(item) & mask;
+        while (table[index] != null) {
+          index = (index + 1) & mask;
+        }
+        table[index] = item;
+        used++;
+      }
+    }
+    if (migrated == oldTable.length || oldSize == 0) {
+      oldTable = null;
+    }
+  }
+
+  // Spliterator over slots [lo, hi) of first followed by second.
+  private static final class SlotSpliterator<E> implements Spliterator<E> {
+    private final Object[] first;
+    private final Object[] second;
+    private int lo;
+    private final int hi;
+    private long estimate;
+
+    SlotSpliterator(Object[] first, Object[] second, int lo, int hi, long estimate) {
+      this.first = first;
+      this.second = second;
+      this.lo = lo;
+      this.hi = hi;
+      this.estimate = estimate;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean tryAdvance(Consumer<? super E> action) {
+      if (action == null) {
+        throw new NullPointerException();
+      }
+      while (lo < hi) {
+        Object item = slot(lo++);
+        if (item != null && item != TOMBSTONE) {
+          action.accept((E) item);
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEachRemaining(Consumer<? super E> action) {
+      if (action == null) {
+        throw new NullPointerException();
+      }
+      for (int i = lo; i < hi; i++) {
+        Object item = slot(i);
+        if (item != null && item != TOMBSTONE) {
+          action.accept((E) item);
+        }
+      }
+      lo = hi;
+    }
+
+    private Object slot(int index) {
+      return index < first.length ? first[index] : second[index - first.length];
+    }
+
+    @Override
+    public Spliterator<E> trySplit() {
+      int mid = (lo + hi) >>> 1;
+      if (mid <= lo) {
+        return null;
+      }
+      estimate >>>= 1;
+      Spliterator<E> prefix = new SlotSpliterator<>(first, second, lo, mid, estimate);
+      lo = mid;
+      return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+      return estimate;
+    }
+
+    @Override
+    public int characteristics() {
+      return Spliterator.DISTINCT | Spliterator.NONNULL;
+    }
+  }
+
+  // spreads the bits of hashCode so that power of two masking works well
+  private static int hash(Object item) {
+    int h = item.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  // smallest power of two >= n (and >= 2)
+  private static int tableSizeFor(int n) {
+    int capacity = 2;
+    while (capacity < n && capacity < (1 << 30)) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+}
@@ -0,0 +1,503 @@
+/*
+ * A HyperLogLog sketch (Flajolet, Fusy, Gandouet and Meunier, 2007) with
+ * the small-range and sparse improvements of HyperLogLog++ (Heule, Nunkesser
+ * and Hall, 2013).
+ *
+ * Each element is hashed to 64 bits. The top p bits pick one of m = 2^p
+ * registers and the register keeps the largest "rank" seen there, the
+ * position of the first 1 bit in the rest of the hash. The harmonic mean
+ * of 2^register over all registers estimates the number of distinct
+ * elements with a standard error of about 1.04 / sqrt(m), 0.8% at the
+ * default precision of 14.
+ *
+ * While few registers are set the sketch is sparse: a sorted int array
+ * with one (register, rank) pair per set register, 4 bytes per pair instead
+ * of m bytes for all of them. It turns dense once the pairs would take more
+ * room than the registers. Small counts are estimated by linear counting
+ * over the empty registers, which is nearly exact there.
+ *
+ * Sketches of the same precision merge by taking the larger value of each
+ * register, so the sketch of A union B is the merge of the sketches of A
+ * and B. The intersection is estimated by inclusion-exclusion,
+ * |A| + |B| - |A union B|, whose error grows with the union; it is only
+ * useful when the intersection is not tiny compared to the union.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * A mergeable estimate of the number of distinct elements of a set.
+ * <br>
+ * Elements are hashed with ISet.fingerprintOf, so two sketches agree on
+ * an element exactly when its hashCode does. Not thread safe.
+ */
+public final class HyperLogLog {
+
+  /**
+   * The precision used by of(ISet) and the no-argument constructor.
+   */
+  public static final int DEFAULT_PRECISION = 14;
+
+  private static final int MIN_PRECISION = 4;
+  private static final int MAX_PRECISION = 16;
+  private static final int RANK_BITS = 6; // a rank is at most 64 - 4 + 1
+  private static final int BUFFER_SIZE = 256;
+
+  private static final byte SPARSE = 1;
+  private static final byte DENSE = 2;
+
+  private final int precision;
+  private final int m;
+
+  private byte[] registers; // null while sparse
+  private int[] sparse; // sorted (register << RANK_BITS | rank), one per register
+  private int sparseSize;
+  private int[] buffer; // unsorted pairs not yet merged into sparse
+  private int bufferSize;
+
+  /**
+   * create an empty sketch of the default precision.
+   */
+  public HyperLogLog() {
+    this(DEFAULT_PRECISION);
+  }
+
+  /**
+   * create an empty sketch with 2^precision registers.
+   * <br>
+   * pre: 4 <= precision <= 16
+   *
+   * @param precision log2 of the number of registers
+   */
+  public HyperLogLog(int precision) {
+    if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+      throw new IllegalArgumentException("Invalid precision.");
+    }
+    this.precision = precision;
+    m = 1 << precision;
+    sparse = new int[0];
+    buffer = new int[BUFFER_SIZE];
+  }
+
+  /**
+   * Return a sketch of the elements of set, built in one pass.
+   * <br>
+   * pre: set != null
+   *
+   * @param set the set to sketch
+   * @return a sketch of the default precision
+   */
+  public static HyperLogLog of(ISet<?> set) {
+    return of(set, DEFAULT_PRECISION);
+  }
+
+  /**
+   * Return a sketch of the elements of set, built in one pass.
+   * <br>
+   * pre: set != null, 4 <= precision <= 16
+   *
+   * @param set       the set to sketch
+   * @param precision log2 of the number of registers
+   * @return a sketch of the given precision
+   */
+  public static HyperLogLog of(ISet<?> set, int precision) {
+    if (set == null) {
+      throw new IllegalArgumentException("Set is null");
+    }
+    HyperLogLog result = new HyperLogLog(precision);
+    if (set.size() > result.m / 4) {
+      result.toDense(); // would turn dense anyway
+    }
+    for (Object e : set) {
+      result.add(e);
+    }
+    return result;
+  }
+
+  /**
+   * Add an item to this sketch.
+   * <br>
+   * pre: item != null
+   *
+   * @param item the item to add
+   */
+  public void add(Object item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Invalid item.");
+    }
+    long hash = ISet.fingerprintOf(item);
+    int index = (int) (hash >>> (64 - precision));
+    // the guard bit caps the rank when the remaining bits are all 0
+    int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+    if (registers != null) {
+      if (registers[index] < rank) {
+        registers[index] = (byte) rank;
+      }
+      return;
+    }
+    buffer[bufferSize++] = index << RANK_BITS | rank;
+    if (bufferSize == buffer.length) {
+      flush();
+    }
+  }
+
+  /**
+   * Merge other into this sketch. Afterwards this sketch estimates the
+   * union of the two sets. other is not changed.
+   * <br>
+   * pre: other != null, other.precision() == precision()
+   *
+   * @param other the sketch to merge in
+   */
+  public void merge(HyperLogLog other) {
+    checkCompatible(other);
+    if (other == this) {
+      return;
+    }
+    other.flush();
+    if (other.registers == null && registers == null) {
+      // flush() may turn this sketch dense, then the rest goes below
+      for (int i = 0; i < other.sparseSize && registers == null; i++) {
+        buffer[bufferSize++] = other.sparse[i];
+        if (bufferSize == buffer.length) {
+          flush();
+        }
+      }
+      if (registers == null) {
+        return;
+      }
+    }
+    toDense();
+    if (other.registers != null) {
+      for (int i = 0; i < m; i++) {
+        if (registers[i] < other.registers[i]) {
+          registers[i] = other.registers[i];
+        }
+      }
+    } else {
+      // taking the larger rank again is harmless for pairs already merged
+      for (int i = 0; i < other.sparseSize; i++) {
+        int index = other.sparse[i] >>> RANK_BITS;
+        byte rank = (byte) (other.sparse[i] & ((1 << RANK_BITS) - 1));
+        if (registers[index] < rank) {
+          registers[index] = rank;
+        }
+      }
+    }
+  }
+
+  /**
+   * Return a copy of this sketch.
+   *
+   * @return a new sketch with the same contents
+   */
+  public HyperLogLog copy() {
+    HyperLogLog result = new HyperLogLog(precision);
+    flush();
+    if (registers != null) {
+      result.registers = registers.clone();
+      result.sparse = null;
+      result.buffer = null;
+    } else {
+      result.sparse = Arrays.copyOf(sparse, sparseSize);
+      result.sparseSize = sparseSize;
+    }
+    return result;
+  }
+
+  /**
+   * Return the estimated number of distinct elements added.
+   *
+   * @return the estimated cardinality
+   */
+  public long estimate() {
+    flush();
+    if (registers == null) {
+      return Math.round(linearCount(m - sparseSize));
+    }
+    double sum = 0;
+    int zeros = 0;
+    for (byte r : registers) {
+      sum += 1.0 / (1L << r);
+      if (r == 0) {
+        zeros++;
+      }
+    }
+    double raw = alpha() * m * (double) m / sum;
+    if (raw <= 2.5 * m && zeros > 0) {
+      return Math.round(linearCount(zeros));
+    }
+    return Math.round(raw);
+  }
+
+  /**
+   * Return the estimated size of the union of the sets a and b were
+   * built from.
+   * <br>
+   * pre: a and b are not null and have the same precision
+   *
+   * @param a the sketch of one set
+   * @param b the sketch of the other set
+   * @return the estimated size of the union
+   */
+  public static long estimateUnion(HyperLogLog a, HyperLogLog b) {
+    if (a == null) {
+      throw new IllegalArgumentException("Sketch is null");
+    }
+    a.checkCompatible(b);
+    HyperLogLog union = a.copy();
+    union.merge(b);
+    return union.estimate();
+  }
+
+  /**
+   * Return the estimated size of the intersection of the sets a and b
+   * were built from, by inclusion-exclusion. The absolute error is that
+   * of the union estimate, so small intersections of large sets are not
+   * estimated well.
+   * <br>
+   * pre: a and b are not null and have the same precision
+   *
+   * @param a the sketch of one set
+   * @param b the sketch of the other set
+   * @return the estimated size of the intersection, never negative
+   */
+  public static long estimateIntersection(HyperLogLog a, HyperLogLog b) {
+    long union = estimateUnion(a, b);
+    long a1 = a.estimate();
+    long b1 = b.estimate();
+    long result = a1 + b1 - union;
+    return Math.max(0, Math.min(result, Math.min(a1, b1)));
+  }
+
+  /**
+   * Return the estimated Jaccard similarity |A intersect B| / |A union B|
+   * of the sets a and b were built from.
+   * <br>
+   * pre: a and b are not null and have the same precision
+   *
+   * @param a the sketch of one set
+   * @param b the sketch of the other set
+   * @return a number between 0 and 1, 0 if both sets are empty
+   */
+  public static double estimateJaccard(HyperLogLog a, HyperLogLog b) {
+    long union = estimateUnion(a, b);
+    if (union == 0) {
+      return 0;
+    }
+    return (double) estimateIntersection(a, b) / union;
+  }
+
+  /**
+   * Return the precision of this sketch.
+   *
+   * @return log2 of the number of registers
+   */
+  public int precision() {
+    return precision;
+  }
+
+  /**
+   * Return this sketch as bytes that fromBytes turns back into an equal
+   * sketch. A sparse sketch takes 2 to 3 bytes per set register, a dense
+   * one 6 bits per register.
+   *
+   * @return the serialized sketch
+   */
+  public byte[] toBytes() {
+    flush();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(registers == null ? SPARSE : DENSE);
+    out.write(precision);
+    if (registers == null) {
+      // pairs are sorted, so store the gaps between them as varints
+      writeVarInt(out, sparseSize);
+      int previous = 0;
+      for (int i = 0; i < sparseSize; i++) {
+        writeVarInt(out, sparse[i] - previous);
+        previous = sparse[i];
+      }
+    } else {
+      // 4 registers of 6 bits in every 3 bytes
+      int bits = 0;
+      int pending = 0;
+      for (byte r : registers) {
+        bits = bits << RANK_BITS | r;
+        pending += RANK_BITS;
+        while (pending >= 8) {
+          pending -= 8;
+          out.write(bits >>> pending);
+        }
+      }
+      if (pending > 0) {
+        out.write(bits << (8 - pending));
+      }
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Rebuild a sketch from the output of toBytes.
+   * <br>
+   * pre: bytes != null
+   *
+   * @param bytes a serialized sketch
+   * @return the sketch
+   */
+  public static HyperLogLog fromBytes(byte[] bytes) {
+    if (bytes == null || bytes.length < 2) {
+      throw new IllegalArgumentException("Invalid sketch.");
+    }
+    HyperLogLog result = new HyperLogLog(bytes[1]);
+    int[] pos = { 2 };
+    if (bytes[0] == SPARSE) {
+      int n = readVarInt(bytes, pos);
+      if (n < 0 || n > result.m) {
+        throw new IllegalArgumentException("Invalid sketch.");
+      }
+      int[] pairs = new int[n];
+      int previous = 0;
+      for (int i = 0; i < n; i++) {
+        int pair = previous + readVarInt(bytes, pos);
+        // registers must be strictly increasing and in range
+        if ((i > 0 && pair >>> RANK_BITS <= previous >>> RANK_BITS) || pair >>> RANK_BITS >= result.m) {
+          throw new IllegalArgumentException("Invalid sketch.");
+        }
+        // a rank is between 1 and 64 - precision + 1, see add
+        int rank = pair & ((1 << RANK_BITS) - 1);
+        if (rank < 1 || rank > 65 - result.precision) {
+          throw new IllegalArgumentException("Invalid sketch.");
+        }
+        pairs[i] = pair;
+        previous = pair;
+      }
+      if (pos[0] != bytes.length) {
+        throw new IllegalArgumentException("Invalid sketch.");
+      }
+      result.sparse = pairs;
+      result.sparseSize = n;
+      if (n > result.m / 4) {
+        result.toDense();
+      }
+    } else if (bytes[0] == DENSE) {
+      if (bytes.length != 2 + (result.m * RANK_BITS + 7) / 8) {
+        throw new IllegalArgumentException("Invalid sketch.");
+      }
+      result.registers = new byte[result.m];
+      long bits = 0;
+      int pending = 0;
+      int i = 0;
+      for (int j = 2; j < bytes.length && i < result.m; j++) {
+        bits = bits << 8 | (bytes[j] & 0xFF);
+        pending += 8;
+        while (pending >= RANK_BITS && i < result.m) {
+          pending -= RANK_BITS;
+          result.registers[i++] = (byte) ((bits >>> pending) & ((1 << RANK_BITS) - 1));
+        }
+      }
+    } else {
+      throw new IllegalArgumentException("Invalid sketch.");
+    }
+    return result;
+  }
+
+  private void checkCompatible(HyperLogLog other) {
+    if (other == null) {
+      throw new IllegalArgumentException("Sketch is null");
+    }
+    if (other.precision != precision) {
+      throw new IllegalArgumentException("Sketches have different precisions.");
+    }
+  }
+
+  /*
+   * Sorts the buffered pairs into the sparse array, keeping the largest
+   * rank per register. Turns the sketch dense once the sparse array would
+   * take more memory than the registers.
+   */
+  private void flush() {
+    if (registers != null || bufferSize == 0) {
+      return;
+    }
+    Arrays.sort(buffer, 0, bufferSize);
+    int[] merged = new int[sparseSize + bufferSize];
+    int n = 0;
+    int i = 0;
+    int j = 0;
+    while (i < sparseSize || j < bufferSize) {
+      int next;
+      if (j == bufferSize || (i < sparseSize && sparse[i] < buffer[j])) {
+        next = sparse[i++];
+      } else {
+        next = buffer[j++];
+      }
+      // same register: the pairs are sorted, so the later one has the larger rank
+      if (n > 0 && (merged[n - 1] >>> RANK_BITS) == (next >>> RANK_BITS)) {
+        merged[n - 1] = next;
+      } else {
+        merged[n++] = next;
+      }
+    }
+    sparse = merged;
+    sparseSize = n;
+    bufferSize = 0;
+    if (sparseSize > m / 4) {
+      toDense();
+    }
+  }
+
+  private void toDense() {
+    if (registers != null) {
+      return;
+    }
+    flush();
+    registers = new byte[m];
+    for (int i = 0; i < sparseSize; i++) {
+      registers[sparse[i] >>> RANK_BITS] = (byte) (sparse[i] & ((1 << RANK_BITS) - 1));
+    }
+    sparse = null;
+    buffer = null;
+    sparseSize = 0;
+  }
+
+  private double linearCount(int zeros) {
+    return m * Math.log((double) m / zeros);
+  }
+
+  private double alpha() {
+    switch (m) {
+      case 16:
+        return 0.673;
+      case 32:
+        return 0.697;
+      case 64:
+        return 0.709;
+      default:
+        return 0.7213 / (1 + 1.079 / m);
+    }
+  }
+
+  private static void writeVarInt(ByteArrayOutputStream out, int value) {
+    while ((value & ~0x7F) != 0) {
+      out.write((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.write(value);
+  }
+
+  private static int readVarInt(byte[] bytes, int[] pos) {
+    int result = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      if (pos[0] >= bytes.length) {
+        throw new IllegalArgumentException("Invalid sketch.");
+      }
+      byte b = bytes[pos[0]++];
+      result |= (b & 0x7F) << shift;
+      if (b >= 0) {
+        return result;
+      }
+    }
+    throw new IllegalArgumentException("Invalid sketch.");
+  }
+}
@@ -1,5 +1,9 @@
 
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Interface provided by UTCS
@@ -212,4 +216,39 @@ public interface IList<E> extends Iterable<E> {
    * @return true if this IList is equal to other, false otherwise
    */
   public boolean equals(Object other);
+
+  /**
+   * Return a Spliterator over the elements of this list in order. This
+   * default wraps iterator() and reports SIZED and ORDERED.
+   * <br>
+   * pre: none
+   *
+   * @return a Spliterator over the elements of this list
+   */
+  @Override
+  default Spliterator<E> spliterator() {
+    return Spliterators.spliterator(iterator(), size(), Spliterator.ORDERED);
+  }
+
+  /**
+   * Return a sequential Stream of the elements of this list.
+   * <br>
+   * pre: none
+   *
+   * @return a Stream over this list
+   */
+  default Stream<E> stream() {
+    return StreamSupport.stream(spliterator(), false);
+  }
+
+  /**
+   * Return a parallel Stream of the elements of this list.
+   * <br>
+   * pre: none
+   *
+   * @return a possibly parallel Stream over this list
+   */
+  default Stream<E> parallelStream() {
+    return StreamSupport.stream(spliterator(), true);
+  }
 }
\ No newline at end of file
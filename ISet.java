@@ -1,4 +1,9 @@
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * An interface that models a set.
@@ -129,6 +134,46 @@ public interface ISet<E> extends Iterable<E> {
    */
   public boolean remove(E item);
 
+  /**
+   * Remove from this set every item that is also in otherSet.
+   * <br>
+   * pre: otherSet != null
+   * <br>
+   * post: this set and otherSet have no elements in common.
+   * otherSet is not altered.
+   *
+   * @param otherSet != null
+   * @return true if this set changed as a result of this operation,
+   *         false otherwise
+   */
+  public boolean removeAll(ISet<E> otherSet);
+
+  /**
+   * Remove from this set every item that is not in otherSet, leaving
+   * the intersection of the two.
+   * <br>
+   * pre: otherSet != null
+   * <br>
+   * post: every element of this set is in otherSet.
+   * otherSet is not altered.
+   *
+   * @param otherSet != null
+   * @return true if this set changed as a result of this operation,
+   *         false otherwise
+   */
+  public boolean retainAll(ISet<E> otherSet);
+
+  /**
+   * Remove from this set every item for which filter returns true.
+   * <br>
+   * pre: filter != null
+   *
+   * @param filter returns true for the items to remove
+   * @return true if this set changed as a result of this operation,
+   *         false otherwise
+   */
+  public boolean removeIf(Predicate<? super E> filter);
+
   /**
    * Return the number of elements of this set.
    * pre: none
@@ -151,4 +196,92 @@ public interface ISet<E> extends Iterable<E> {
    * @return a set that is the union of this set and otherSet
    */
   public ISet<E> union(ISet<E> otherSet);
+
+  /**
+   * Return a lazy, read-only view of this set for building chained set
+   * expressions such as view().union(b).intersection(c). Nothing is
+   * computed until the view is iterated or copied with toSet().
+   * <br>
+   * pre: none
+   *
+   * @return a view of this set
+   */
+  default SetView<E> view() {
+    return SetView.of(this);
+  }
+
+  /**
+   * Return a 64 bit fingerprint of the contents of this set: the sum of
+   * fingerprintOf(e) over the elements. Equal sets always have equal
+   * fingerprints, whatever their class, so sets whose fingerprints differ
+   * cannot be equal. Equal fingerprints do not prove the sets are equal.
+   * <br>
+   * This default walks the set. Sets that keep the sum up to date as
+   * elements are added and removed override it to run in O(1).
+   * <br>
+   * pre: none
+   *
+   * @return the fingerprint of this set
+   */
+  default long fingerprint() {
+    long result = 0;
+    for (E e : this) {
+      result += fingerprintOf(e);
+    }
+    return result;
+  }
+
+  /**
+   * Return the contribution of item to the fingerprint of a set. This is
+   * item.hashCode() spread over 64 bits, so that the sums of different
+   * sets rarely collide.
+   * <br>
+   * pre: item != null
+   *
+   * @param item != null
+   * @return the fingerprint of item
+   */
+  static long fingerprintOf(Object item) {
+    long h = item.hashCode() * 0x9E3779B97F4A7C15L;
+    h ^= h >>> 29;
+    h *= 0xBF58476D1CE4E5B9L;
+    return h ^ (h >>> 32);
+  }
+
+  /**
+   * Return a Spliterator over the elements of this set. This default
+   * wraps iterator() and reports SIZED and DISTINCT; sets that can split
+   * their storage directly override it.
+   * <br>
+   * pre: none
+   *
+   * @return a Spliterator over the elements of this set
+   */
+  @Override
+  default Spliterator<E> spliterator() {
+    return Spliterators.spliterator(iterator(), size(), Spliterator.DISTINCT);
+  }
+
+  /**
+   * Return a sequential Stream of the elements of this set.
+   * <br>
+   * pre: none
+   *
+   * @return a Stream over this set
+   */
+  default Stream<E> stream() {
+    return StreamSupport.stream(spliterator(), false);
+  }
+
+  /**
+   * Return a parallel Stream of the elements of this set. How well it
+   * scales depends on how well spliterator() splits.
+   * <br>
+   * pre: none
+   *
+   * @return a possibly parallel Stream over this set
+   */
+  default Stream<E> parallelStream() {
+    return StreamSupport.stream(spliterator(), true);
+  }
 }
\ No newline at end of file
@@ -0,0 +1,99 @@
+/*
+ * A Spliterator over a range of an array-backed List, shared by the sets
+ * that keep their elements in an ArrayList.
+ *
+ * Splitting halves the index range, so every piece knows its exact size
+ * (SIZED and SUBSIZED) and parallel streams divide the work evenly.
+ */
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator for the elements of list at indices [lo, hi).
+ * <br>
+ * The list must not be structurally changed while the Spliterator is in
+ * use. It is not fail-fast.
+ *
+ * @param <E> The data type of the elements.
+ */
+final class IndexSpliterator<E> implements Spliterator<E> {
+
+  private final List<E> list;
+  private final int characteristics;
+  private int lo;
+  private final int hi;
+
+  /**
+   * create a Spliterator over list[lo, hi).
+   * <br>
+   * pre: list supports fast random access, 0 <= lo <= hi <= list.size()
+   *
+   * @param list            the backing list
+   * @param lo              first index, inclusive
+   * @param hi              last index, exclusive
+   * @param characteristics extra characteristics such as SORTED or DISTINCT;
+   *                        SIZED and SUBSIZED are always reported
+   */
+  IndexSpliterator(List<E> list, int lo, int hi, int characteristics) {
+    this.list = list;
+    this.lo = lo;
+    this.hi = hi;
+    this.characteristics = characteristics | SIZED | SUBSIZED;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super E> action) {
+    if (action == null) {
+      throw new NullPointerException();
+    }
+    if (lo >= hi) {
+      return false;
+    }
+    action.accept(list.get(lo++));
+    return true;
+  }
+
+  @Override
+  public void forEachRemaining(Consumer<? super E> action) {
+    if (action == null) {
+      throw new NullPointerException();
+    }
+    for (int i = lo; i < hi; i++) {
+      action.accept(list.get(i));
+    }
+    lo = hi;
+  }
+
+  @Override
+  public Spliterator<E> trySplit() {
+    int mid = (lo + hi) >>> 1;
+    if (mid <= lo) {
+      return null;
+    }
+    Spliterator<E> prefix = new IndexSpliterator<>(list, lo, mid, characteristics);
+    lo = mid;
+    return prefix;
+  }
+
+  @Override
+  public long estimateSize() {
+    return hi - lo;
+  }
+
+  @Override
+  public int characteristics() {
+    return characteristics;
+  }
+
+  // SORTED elements of these sets are in natural order
+  @Override
+  public Comparator<? super E> getComparator() {
+    if (hasCharacteristics(SORTED)) {
+      return null;
+    }
+    throw new IllegalStateException();
+  }
+}
@@ -0,0 +1,288 @@
+/*
+ * A hash based IntSet.
+ *
+ * The ints live directly in an int[] table with linear probing. 0 marks a
+ * free slot, so the value 0 itself is tracked with a separate flag. Removal
+ * shifts the following entries of the probe run back instead of leaving
+ * tombstones.
+ */
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+public class IntHashSet implements IntSet {
+
+  private static final int DEFAULT_CAPACITY = 16;
+  private static final float DEFAULT_LOAD_FACTOR = 0.5f;
+
+  private final float loadFactor;
+  private int[] keys;
+  private int mask;
+  private int threshold;
+  private boolean containsZero;
+  private int size; // includes the zero key
+
+  /**
+   * create an empty IntHashSet with the default capacity and load factor.
+   */
+  public IntHashSet() {
+    this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+  }
+
+  /**
+   * create an empty IntHashSet able to hold expectedSize elements
+   * before it has to resize.
+   * <br>
+   * pre: expectedSize >= 0
+   *
+   * @param expectedSize the number of elements expected in this set
+   */
+  public IntHashSet(int expectedSize) {
+    this(expectedSize, DEFAULT_LOAD_FACTOR);
+  }
+
+  /**
+   * create an empty IntHashSet able to hold expectedSize elements
+   * before it has to resize.
+   * <br>
+   * pre: expectedSize >= 0, 0 < loadFactor < 1
+   *
+   * @param expectedSize the number of elements expected in this set
+   * @param loadFactor   the fraction of the table that may be occupied
+   *                     before the table grows
+   */
+  public IntHashSet(int expectedSize, float loadFactor) {
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("Invalid size.");
+    }
+    if (!(loadFactor > 0 && loadFactor < 1)) {
+      throw new IllegalArgumentException("Invalid load factor.");
+    }
+    this.loadFactor = loadFactor;
+    allocate(tableSizeFor((int) Math.ceil(expectedSize / loadFactor)));
+  }
+
+  @Override
+  public boolean add(int item) {
+    if (item == 0) {
+      if (containsZero) {
+        return false;
+      }
+      containsZero = true;
+      size++;
+      return true;
+    }
+    int index = mix(item) & mask;
+    int current;
+    while ((current = keys[index]) != 0) {
+      if (current == item) {
+        return false;
+      }
+      index = (index + 1) & mask;
+    }
+    keys[index] = item;
+    size++;
+    if (size > threshold) {
+      rehash(keys.length * 2);
+    }
+    return true;
+  }
+
+  @Override
+  public boolean contains(int item) {
+    if (item == 0) {
+      return containsZero;
+    }
+    int index = mix(item) & mask;
+    int current;
+    while ((current = keys[index]) != 0) {
+      if (current == item) {
+        return true;
+      }
+      index = (index + 1) & mask;
+    }
+    return false;
+  }
+
+  @Override
+  public boolean remove(int item) {
+    if (item == 0) {
+      if (!containsZero) {
+        return false;
+      }
+      containsZero = false;
+      size--;
+      return true;
+    }
+    int index = mix(item) & mask;
+    int current;
+    while ((current = keys[index]) != 0) {
+      if (current == item) {
+        shiftKeys(index, null);
+        size--;
+        return true;
+      }
+      index = (index + 1) & mask;
+    }
+    return false;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(keys, 0);
+    containsZero = false;
+    size = 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /*
+   * Returns an iterator that walks the table from the last slot down to the
+   * first. Going downwards means that when remove() shifts a later entry
+   * back into the freed slot, the moved entry has already been returned.
+   * The one exception is an entry that wraps around from the start of the
+   * table; those are remembered and returned at the end.
+   */
+  @Override
+  public PrimitiveIterator.OfInt iterator() {
+    return new Itr();
+  }
+
+  private class Itr implements PrimitiveIterator.OfInt {
+    private int pos = keys.length;
+    private int remaining = size;
+    private boolean zeroPending = containsZero;
+    private int last = -1; // slot of the last key, keys.length for 0
+    private int lastKey;
+    private int[] wrapped;
+    private int wrappedCount;
+
+    @Override
+    public boolean hasNext() {
+      return remaining != 0;
+    }
+
+    @Override
+    public int nextInt() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      remaining--;
+      if (zeroPending) {
+        zeroPending = false;
+        last = keys.length;
+        lastKey = 0;
+        return 0;
+      }
+      while (--pos >= 0) {
+        if (keys[pos] != 0) {
+          last = pos;
+          lastKey = keys[pos];
+          return lastKey;
+        }
+      }
+      // the table is exhausted, hand out the entries that wrapped
+      last = Integer.MAX_VALUE;
+      lastKey = wrapped[--wrappedCount];
+      return lastKey;
+    }
+
+    @Override
+    public void remove() {
+      if (last == -1) {
+        throw new IllegalStateException();
+      }
+      if (last == keys.length) {
+        containsZero = false;
+        size--;
+      } else if (last == Integer.MAX_VALUE) {
+        IntHashSet.this.remove(lastKey);
+      } else {
+        shiftKeys(last, this);
+        size--;
+      }
+      last = -1;
+    }
+
+    private void addWrapped(int key) {
+      if (wrapped == null) {
+        wrapped = new int[2];
+      } else if (wrappedCount == wrapped.length) {
+        wrapped = Arrays.copyOf(wrapped, wrappedCount * 2);
+      }
+      wrapped[wrappedCount++] = key;
+    }
+  }
+
+  /*
+   * Closes the gap at pos by moving back any later entry of the probe run
+   * that would no longer be reachable. If itr is not null, entries that
+   * move from the start of the table to its end are reported to it.
+   */
+  private void shiftKeys(int pos, Itr itr) {
+    int last;
+    int slot;
+    int current;
+    while (true) {
+      pos = ((last = pos) + 1) & mask;
+      while (true) {
+        if ((current = keys[pos]) == 0) {
+          keys[last] = 0;
+          return;
+        }
+        slot = mix(current) & mask;
+        if (last <= pos ? last >= slot || slot > pos : last >= slot && slot > pos) {
+          break;
+        }
+        pos = (pos + 1) & mask;
+      }
+      if (pos < last && itr != null) {
+        itr.addWrapped(current);
+      }
+      keys[last] = current;
+    }
+  }
+
+  private void rehash(int capacity) {
+    int[] old = keys;
+    allocate(capacity);
+    for (int key : old) {
+      if (key != 0) {
+        int index = mix(key) & mask;
+        while (keys[index] != 0) {
+          index = (index + 1) & mask;
+        }
+        keys[index] = key;
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    keys = new int[capacity];
+    mask = capacity - 1;
+    threshold = (int) (capacity * loadFactor);
+  }
+
+  private static int mix(int item) {
+    int h = item * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  // smallest power of two >= n (and >= 2)
+  private static int tableSizeFor(int n) {
+    int capacity = 2;
+    while (capacity < n && capacity < (1 << 30)) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  @Override
+  public String toString() {
+    return asSet().toString();
+  }
+}
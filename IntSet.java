@@ -0,0 +1,75 @@
+import java.util.PrimitiveIterator;
+
+/**
+ * An interface that models a set of primitive ints.
+ *
+ * Sets have no implied order and duplicate items are not allowed.
+ * Implementations store the ints unboxed, so adding, testing and iterating
+ * do not allocate. Use asSet() to pass one where an ISet&lt;Integer&gt; is
+ * expected.
+ */
+public interface IntSet {
+
+  /**
+   * Add an item to this set.
+   *
+   * @param item the item to be added to this set.
+   * @return true if this set changed as a result of this operation,
+   *         false otherwise.
+   */
+  public boolean add(int item);
+
+  /**
+   * Make this set empty.
+   * <br>
+   * pre: none
+   * <br>
+   * post: size() = 0
+   */
+  public void clear();
+
+  /**
+   * Determine if item is in this set.
+   *
+   * @param item element whose presence is being tested.
+   * @return true if this set contains the specified item, false otherwise.
+   */
+  public boolean contains(int item);
+
+  /**
+   * Return an iterator over the elements of this set. nextInt() does not
+   * box the elements.
+   * pre: none
+   *
+   * @return an iterator for the elements of this set
+   */
+  public PrimitiveIterator.OfInt iterator();
+
+  /**
+   * Remove the specified item from this set if it is present.
+   *
+   * @param item the item to remove from the set.
+   * @return true if this set changed as a result of this operation,
+   *         false otherwise
+   */
+  public boolean remove(int item);
+
+  /**
+   * Return the number of elements of this set.
+   * pre: none
+   *
+   * @return the number of items in this set
+   */
+  public int size();
+
+  /**
+   * Return a view of this set as an ISet of Integers. Changes to either
+   * are visible in the other.
+   * pre: none
+   *
+   * @return an ISet backed by this set
+   */
+  public default ISet<Integer> asSet() {
+    return new IntSetAdapter(this);
+  }
+}
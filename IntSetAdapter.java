@@ -0,0 +1,156 @@
+/*
+ * Lets an IntSet be used where an ISet<Integer> is expected.
+ *
+ * Every call is forwarded to the wrapped IntSet, so the two always agree.
+ * Elements are boxed only when they cross this boundary; operations between
+ * two adapters stay on primitive ints.
+ */
+
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+
+public class IntSetAdapter extends AbstractSet<Integer> {
+
+  private final IntSet set;
+
+  /**
+   * create an ISet view of set.
+   *
+   * @param set != null
+   */
+  public IntSetAdapter(IntSet set) {
+    if (set == null) {
+      throw new IllegalArgumentException("Set is null");
+    }
+    this.set = set;
+  }
+
+  /**
+   * Return the IntSet this adapter forwards to.
+   *
+   * @return the wrapped IntSet
+   */
+  public IntSet intSet() {
+    return set;
+  }
+
+  @Override
+  public boolean add(Integer item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Invalid item.");
+    }
+    return set.add(item);
+  }
+
+  @Override
+  public void clear() {
+    set.clear();
+  }
+
+  @Override
+  public boolean contains(Integer item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Item is null");
+    }
+    return set.contains(item);
+  }
+
+  @Override
+  public Iterator<Integer> iterator() {
+    return set.iterator();
+  }
+
+  @Override
+  public boolean remove(Integer item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Item is null");
+    }
+    return set.remove(item);
+  }
+
+  @Override
+  public int size() {
+    return set.size();
+  }
+
+  @Override
+  public ISet<Integer> intersection(ISet<Integer> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    IntHashSet result = new IntHashSet(Math.min(size(), otherSet.size()));
+    PrimitiveIterator.OfInt itr = set.iterator();
+    while (itr.hasNext()) {
+      int e = itr.nextInt();
+      if (contains(otherSet, e)) {
+        result.add(e);
+      }
+    }
+    return result.asSet();
+  }
+
+  @Override
+  public ISet<Integer> union(ISet<Integer> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    IntHashSet result = new IntHashSet(size() + otherSet.size());
+    PrimitiveIterator.OfInt itr = set.iterator();
+    while (itr.hasNext()) {
+      result.add(itr.nextInt());
+    }
+    itr = primitiveIterator(otherSet);
+    while (itr.hasNext()) {
+      result.add(itr.nextInt());
+    }
+    return result.asSet();
+  }
+
+  @Override
+  public ISet<Integer> difference(ISet<Integer> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    IntHashSet result = new IntHashSet(size());
+    PrimitiveIterator.OfInt itr = set.iterator();
+    while (itr.hasNext()) {
+      int e = itr.nextInt();
+      if (!contains(otherSet, e)) {
+        result.add(e);
+      }
+    }
+    return result.asSet();
+  }
+
+  @Override
+  public Object clone() {
+    Object result = new IntSetAdapter(new IntHashSet());
+    return result;
+  }
+
+  // membership test that avoids boxing when other wraps an IntSet
+  private static boolean contains(ISet<Integer> other, int item) {
+    if (other instanceof IntSetAdapter) {
+      return ((IntSetAdapter) other).set.contains(item);
+    }
+    return other.contains(item);
+  }
+
+  private static PrimitiveIterator.OfInt primitiveIterator(ISet<Integer> other) {
+    if (other instanceof IntSetAdapter) {
+      return ((IntSetAdapter) other).set.iterator();
+    }
+    Iterator<Integer> itr = other.iterator();
+    return new PrimitiveIterator.OfInt() {
+      @Override
+      public boolean hasNext() {
+        return itr.hasNext();
+      }
+
+      @Override
+      public int nextInt() {
+        return itr.next();
+      }
+    };
+  }
+}
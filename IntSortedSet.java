@@ -0,0 +1,151 @@
+/*
+ * An IntSet whose elements are kept in ascending order in a plain int[],
+ * the primitive counterpart of SortedSet.
+ */
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+public class IntSortedSet implements IntSet {
+
+  private static final int DEFAULT_CAPACITY = 10;
+
+  private int[] elements;
+  private int size;
+
+  /**
+   * create an empty IntSortedSet
+   */
+  public IntSortedSet() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * create an empty IntSortedSet able to hold capacity elements
+   * before it has to grow.
+   * <br>
+   * pre: capacity >= 0
+   *
+   * @param capacity the number of elements expected in this set
+   */
+  public IntSortedSet(int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Invalid capacity.");
+    }
+    elements = new int[capacity];
+  }
+
+  /**
+   * Return the smallest element in this IntSortedSet.
+   * <br>
+   * pre: size() != 0
+   *
+   * @return the smallest element in this IntSortedSet.
+   */
+  public int min() {
+    if (size == 0) {
+      throw new IllegalStateException("Set is Empty");
+    }
+    return elements[0];
+  }
+
+  /**
+   * Return the largest element in this IntSortedSet.
+   * <br>
+   * pre: size() != 0
+   *
+   * @return the largest element in this IntSortedSet.
+   */
+  public int max() {
+    if (size == 0) {
+      throw new IllegalStateException("Set is Empty");
+    }
+    return elements[size - 1];
+  }
+
+  @Override
+  public boolean add(int item) {
+    int index = Arrays.binarySearch(elements, 0, size, item);
+    if (index >= 0) {
+      return false;
+    }
+    index = -(index + 1);
+    if (size == elements.length) {
+      elements = Arrays.copyOf(elements, Math.max(DEFAULT_CAPACITY, size + (size >> 1)));
+    }
+    System.arraycopy(elements, index, elements, index + 1, size - index);
+    elements[index] = item;
+    size++;
+    return true;
+  }
+
+  @Override
+  public boolean contains(int item) {
+    return Arrays.binarySearch(elements, 0, size, item) >= 0;
+  }
+
+  @Override
+  public boolean remove(int item) {
+    int index = Arrays.binarySearch(elements, 0, size, item);
+    if (index < 0) {
+      return false;
+    }
+    removeAt(index);
+    return true;
+  }
+
+  private void removeAt(int index) {
+    System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+    size--;
+  }
+
+  @Override
+  public void clear() {
+    size = 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  // Elements are returned in ascending order.
+  @Override
+  public PrimitiveIterator.OfInt iterator() {
+    PrimitiveIterator.OfInt itr = new PrimitiveIterator.OfInt() {
+      private int current;
+      private boolean removeOK;
+
+      @Override
+      public boolean hasNext() {
+        return current < size;
+      }
+
+      @Override
+      public int nextInt() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        removeOK = true;
+        return elements[current++];
+      }
+
+      @Override
+      public void remove() {
+        if (!removeOK) {
+          throw new IllegalStateException();
+        }
+        current--;
+        removeAt(current);
+        removeOK = false;
+      }
+    };
+    return itr;
+  }
+
+  @Override
+  public String toString() {
+    return asSet().toString();
+  }
+}
@@ -0,0 +1,91 @@
+import java.util.UUID;
+
+/**
+ * Converts keys of a set to and from a fixed number of bytes, so they can
+ * be stored outside the Java heap (see OffHeapSet).
+ * <br>
+ * Two keys must encode to the same bytes exactly when they are equal.
+ *
+ * @param <E> The data type of the keys.
+ */
+public interface KeyCodec<E> {
+
+  /** Encodes a Long as 8 big-endian bytes. */
+  public static final KeyCodec<Long> LONG_KEYS = new KeyCodec<Long>() {
+    @Override
+    public int width() {
+      return 8;
+    }
+
+    @Override
+    public void encode(Long key, byte[] dest) {
+      putLong(key, dest, 0);
+    }
+
+    @Override
+    public Long decode(byte[] src) {
+      return getLong(src, 0);
+    }
+  };
+
+  /** Encodes a UUID as its 16 big-endian bytes. */
+  public static final KeyCodec<UUID> UUID_KEYS = new KeyCodec<UUID>() {
+    @Override
+    public int width() {
+      return 16;
+    }
+
+    @Override
+    public void encode(UUID key, byte[] dest) {
+      putLong(key.getMostSignificantBits(), dest, 0);
+      putLong(key.getLeastSignificantBits(), dest, 8);
+    }
+
+    @Override
+    public UUID decode(byte[] src) {
+      return new UUID(getLong(src, 0), getLong(src, 8));
+    }
+  };
+
+  /**
+   * Return the number of bytes every encoded key occupies.
+   *
+   * @return the width of an encoded key, > 0
+   */
+  public int width();
+
+  /**
+   * Write the encoding of key into the first width() bytes of dest.
+   * <br>
+   * pre: key != null, dest.length >= width()
+   *
+   * @param key  the key to encode
+   * @param dest where to write the encoding
+   */
+  public void encode(E key, byte[] dest);
+
+  /**
+   * Rebuild a key from the first width() bytes of src.
+   * <br>
+   * pre: src.length >= width()
+   *
+   * @param src an encoding produced by encode
+   * @return the key src encodes
+   */
+  public E decode(byte[] src);
+
+  private static void putLong(long value, byte[] dest, int offset) {
+    for (int i = 7; i >= 0; i--) {
+      dest[offset + i] = (byte) value;
+      value >>>= 8;
+    }
+  }
+
+  private static long getLong(byte[] src, int offset) {
+    long value = 0;
+    for (int i = 0; i < 8; i++) {
+      value = (value << 8) | (src[offset + i] & 0xFF);
+    }
+    return value;
+  }
+}
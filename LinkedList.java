@@ -1,5 +1,8 @@
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 
 /**
  * @author Abraham Martinez
@@ -221,6 +224,75 @@ public class LinkedList<E> implements IList<E> {
     return itr;
   }
 
+  /*
+   * Returns a Spliterator for this list.
+   *
+   * A linked list cannot be split in the middle without walking to it, so
+   * trySplit() walks a batch of nodes from the front, copies their data into
+   * an array and hands that array off as the prefix. Batches grow by
+   * BATCH_UNIT each split, as in the JDK's own LinkedList, so a parallel
+   * stream gets a few small tasks early and larger ones later.
+   */
+  @Override
+  public Spliterator<E> spliterator() {
+    return new NodeSpliterator(front, size);
+  }
+
+  private static final int BATCH_UNIT = 1 << 10;
+  private static final int MAX_BATCH = 1 << 25;
+
+  private class NodeSpliterator implements Spliterator<E> {
+    private DoubleListNode<E> current;
+    private int remaining;
+    private int batch;
+
+    NodeSpliterator(DoubleListNode<E> current, int remaining) {
+      this.current = current;
+      this.remaining = remaining;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super E> action) {
+      if (action == null) {
+        throw new NullPointerException();
+      }
+      if (remaining <= 0) {
+        return false;
+      }
+      E result = current.getData();
+      current = current.getNext();
+      remaining--;
+      action.accept(result);
+      return true;
+    }
+
+    @Override
+    public Spliterator<E> trySplit() {
+      if (remaining <= 1) {
+        return null;
+      }
+      batch = Math.min(batch + BATCH_UNIT, MAX_BATCH);
+      int n = Math.min(batch, remaining);
+      Object[] prefix = new Object[n];
+      for (int i = 0; i < n; i++) {
+        prefix[i] = current.getData();
+        current = current.getNext();
+      }
+      remaining -= n;
+      return Spliterators.spliterator(prefix, 0, n, Spliterator.ORDERED);
+    }
+
+    @Override
+    public long estimateSize() {
+      return remaining;
+    }
+
+    @Override
+    public int characteristics() {
+      return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+    }
+  }
+
   /*
    * Removes all elements in this list from start (incl.) to stop (excl.)
    * Think of Concurrent Modification issues; items are removed from end to
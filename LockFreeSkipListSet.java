@@ -0,0 +1,537 @@
+/*
+ * A lock-free skip list implementation of ISet, after the LockFreeSkipList
+ * of Herlihy and Shavit (The Art of Multiprocessor Programming, ch. 14).
+ *
+ * Every link is an AtomicMarkableReference. A node is removed by first
+ * marking its links from the top level down (logical deletion) and then
+ * letting find() unlink it with compareAndSet (physical deletion). The mark
+ * on the bottom level link is the point at which an element stops being in
+ * the set. No operation ever takes a lock, so readers never block writers
+ * and a stalled thread never blocks anyone else.
+ */
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicMarkableReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread safe ISet whose elements are kept in ascending order.
+ * <br>
+ * add, remove and contains are lock-free and run in expected O(log n) time.
+ * Iterators and the navigation methods are weakly consistent: they never
+ * throw ConcurrentModificationException and reflect some state of the set
+ * at or since the point they started.
+ *
+ * @param <E> The data type of the elements of this set.
+ */
+public class LockFreeSkipListSet<E extends Comparable<? super E>> extends AbstractSet<E> {
+
+  private static final int MAX_LEVEL = 32;
+
+  private final Node<E> head = new Node<>(null, MAX_LEVEL - 1);
+  private final LongAdder size = new LongAdder();
+  private final LongAdder fingerprint = new LongAdder(); // sum of ISet.fingerprintOf
+
+  // highest level any node has been linked at; searches start here
+  private final AtomicInteger levelInUse = new AtomicInteger();
+
+  /**
+   * create an empty LockFreeSkipListSet
+   */
+  public LockFreeSkipListSet() {
+  }
+
+  @Override
+  public boolean add(E item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Invalid item.");
+    }
+    int topLevel = randomLevel();
+    int inUse;
+    while (topLevel > (inUse = levelInUse.get()) && !levelInUse.compareAndSet(inUse, topLevel)) {
+      // another thread raised it first, check again
+    }
+    Node<E>[] preds = newNodeArray();
+    Node<E>[] succs = newNodeArray();
+    boolean[] marked = { false };
+    while (true) {
+      if (find(item, preds, succs)) {
+        return false;
+      }
+      Node<E> node = new Node<>(item, topLevel);
+      for (int level = 0; level <= topLevel; level++) {
+        node.next[level].set(succs[level], false);
+      }
+      // linking the bottom level is what adds item to the set
+      if (!preds[0].next[0].compareAndSet(succs[0], node, false, false)) {
+        continue;
+      }
+      size.increment();
+      fingerprint.add(ISet.fingerprintOf(item));
+      for (int level = 1; level <= topLevel; level++) {
+        while (true) {
+          Node<E> pred = preds[level];
+          Node<E> succ = succs[level];
+          Node<E> current = node.next[level].get(marked);
+          if (marked[0]) {
+            return true; // already being removed, stop building it up
+          }
+          if (current != succ && !node.next[level].compareAndSet(current, succ, false, false)) {
+            continue;
+          }
+          if (pred.next[level].compareAndSet(succ, node, false, false)) {
+            break;
+          }
+          find(item, preds, succs);
+          if (succs[0] != node) {
+            return true; // removed meanwhile
+          }
+        }
+      }
+      return true;
+    }
+  }
+
+  @Override
+  public boolean remove(E item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Item is null");
+    }
+    Node<E>[] preds = newNodeArray();
+    Node<E>[] succs = newNodeArray();
+    boolean[] marked = { false };
+    if (!find(item, preds, succs)) {
+      return false;
+    }
+    Node<E> victim = succs[0];
+    for (int level = victim.topLevel; level >= 1; level--) {
+      Node<E> succ = victim.next[level].get(marked);
+      while (!marked[0]) {
+        victim.next[level].attemptMark(succ, true);
+        succ = victim.next[level].get(marked);
+      }
+    }
+    Node<E> succ = victim.next[0].get(marked);
+    while (true) {
+      boolean markedByMe = victim.next[0].compareAndSet(succ, succ, false, true);
+      succ = victim.next[0].get(marked);
+      if (markedByMe) {
+        find(item, preds, succs); // unlinks victim
+        size.decrement();
+        fingerprint.add(-ISet.fingerprintOf(victim.item));
+        return true;
+      } else if (marked[0]) {
+        return false; // another thread removed it first
+      }
+    }
+  }
+
+  // Wait-free: never helps unlink, never retries.
+  @Override
+  public boolean contains(E item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Item is null");
+    }
+    Node<E> node = ceilingNode(item, true);
+    return node != null && node.item.compareTo(item) == 0;
+  }
+
+  /**
+   * Return the smallest element in this set.
+   * <br>
+   * pre: size() != 0
+   *
+   * @return the smallest element in this set.
+   */
+  public E min() {
+    Node<E> node = ceilingNode(null, true);
+    if (node == null) {
+      throw new IllegalStateException("Set is Empty");
+    }
+    return node.item;
+  }
+
+  /**
+   * Return the largest element in this set.
+   * <br>
+   * pre: size() != 0
+   *
+   * @return the largest element in this set.
+   */
+  public E max() {
+    Node<E> node = floorNode(null, true);
+    if (node == null) {
+      throw new IllegalStateException("Set is Empty");
+    }
+    return node.item;
+  }
+
+  /**
+   * Return the smallest element in this set that is greater than or equal
+   * to item, or null if there is none.
+   * <br>
+   * pre: item != null
+   *
+   * @param item the value to search for
+   * @return the least element >= item, or null
+   */
+  public E ceiling(E item) {
+    return itemOf(ceilingNode(checked(item), true));
+  }
+
+  /**
+   * Return the largest element in this set that is less than or equal
+   * to item, or null if there is none.
+   * <br>
+   * pre: item != null
+   *
+   * @param item the value to search for
+   * @return the greatest element <= item, or null
+   */
+  public E floor(E item) {
+    return itemOf(floorNode(checked(item), true));
+  }
+
+  /**
+   * Return the smallest element in this set that is strictly greater
+   * than item, or null if there is none.
+   * <br>
+   * pre: item != null
+   *
+   * @param item the value to search for
+   * @return the least element > item, or null
+   */
+  public E higher(E item) {
+    return itemOf(ceilingNode(checked(item), false));
+  }
+
+  /**
+   * Return the largest element in this set that is strictly less
+   * than item, or null if there is none.
+   * <br>
+   * pre: item != null
+   *
+   * @param item the value to search for
+   * @return the greatest element < item, or null
+   */
+  public E lower(E item) {
+    return itemOf(floorNode(checked(item), false));
+  }
+
+  @Override
+  public int size() {
+    long sum = size.sum();
+    return sum < 0 ? 0 : (int) Math.min(sum, Integer.MAX_VALUE);
+  }
+
+  // exact only while no writer is running, like size()
+  @Override
+  public long fingerprint() {
+    return fingerprint.sum();
+  }
+
+  @Override
+  public void clear() {
+    Node<E> node;
+    while ((node = ceilingNode(null, true)) != null) {
+      remove(node.item);
+    }
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return ascendingIterator(null, true, null, true);
+  }
+
+  /**
+   * Return an iterator over the elements of this set between from and to,
+   * in ascending order.
+   * <br>
+   * pre: none
+   *
+   * @param from          the lower bound, or null for no lower bound
+   * @param fromInclusive true if from itself may be returned
+   * @param to            the upper bound, or null for no upper bound
+   * @param toInclusive   true if to itself may be returned
+   * @return an ascending iterator over the range
+   */
+  public Iterator<E> ascendingIterator(E from, boolean fromInclusive, E to, boolean toInclusive) {
+    return new RangeIterator(from, fromInclusive, to, toInclusive, false);
+  }
+
+  /**
+   * Return an iterator over the elements of this set between from and to,
+   * in descending order. Each step costs O(log n).
+   * <br>
+   * pre: none
+   *
+   * @param from          the lower bound, or null for no lower bound
+   * @param fromInclusive true if from itself may be returned
+   * @param to            the upper bound, or null for no upper bound
+   * @param toInclusive   true if to itself may be returned
+   * @return a descending iterator over the range
+   */
+  public Iterator<E> descendingIterator(E from, boolean fromInclusive, E to, boolean toInclusive) {
+    return new RangeIterator(from, fromInclusive, to, toInclusive, true);
+  }
+
+  @Override
+  public ISet<E> intersection(ISet<E> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    ISet<E> result = new LockFreeSkipListSet<>();
+    for (E e : this) {
+      if (otherSet.contains(e)) {
+        result.add(e);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public ISet<E> union(ISet<E> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    ISet<E> result = new LockFreeSkipListSet<>();
+    result.addAll(this);
+    result.addAll(otherSet);
+    return result;
+  }
+
+  @Override
+  public ISet<E> difference(ISet<E> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    ISet<E> result = new LockFreeSkipListSet<>();
+    for (E e : this) {
+      if (!otherSet.contains(e)) {
+        result.add(e);
+      }
+    }
+    return result;
+  }
+
+  // Views of this set iterate in ascending order, so chains merge instead of probing.
+  @Override
+  public SetView<E> view() {
+    return SetView.sorted(this, Comparator.naturalOrder());
+  }
+
+  @Override
+  public Object clone() {
+    Object result = new LockFreeSkipListSet<>();
+    return result;
+  }
+
+  /*
+   * Fills preds and succs with, for every level, the last node before item
+   * and the first node at or after it, unlinking any marked node met on the
+   * way. Returns true if item is in the set.
+   */
+  private boolean find(E item, Node<E>[] preds, Node<E>[] succs) {
+    boolean[] marked = { false };
+    retry: while (true) {
+      Node<E> pred = head;
+      for (int level = levelInUse.get(); level >= 0; level--) {
+        Node<E> current = pred.next[level].getReference();
+        while (current != null) {
+          Node<E> succ = current.next[level].get(marked);
+          if (marked[0]) {
+            if (!pred.next[level].compareAndSet(current, succ, false, false)) {
+              continue retry;
+            }
+            current = succ;
+          } else if (current.item.compareTo(item) < 0) {
+            pred = current;
+            current = succ;
+          } else {
+            break;
+          }
+        }
+        preds[level] = pred;
+        succs[level] = current;
+      }
+      return succs[0] != null && succs[0].item.compareTo(item) == 0;
+    }
+  }
+
+  /*
+   * Returns the first unmarked node whose item is >= item (> item if not
+   * inclusive), or null. A null item stands for minus infinity.
+   */
+  private Node<E> ceilingNode(E item, boolean inclusive) {
+    boolean[] marked = { false };
+    Node<E> pred = head;
+    Node<E> current = null;
+    for (int level = levelInUse.get(); level >= 0; level--) {
+      current = pred.next[level].getReference();
+      while (current != null) {
+        Node<E> succ = current.next[level].get(marked);
+        if (marked[0]) {
+          current = succ;
+        } else if (item != null && before(current.item, item, inclusive)) {
+          pred = current;
+          current = succ;
+        } else {
+          break;
+        }
+      }
+    }
+    return current;
+  }
+
+  /*
+   * Returns the last unmarked node whose item is <= item (< item if not
+   * inclusive), or null. A null item stands for plus infinity.
+   */
+  private Node<E> floorNode(E item, boolean inclusive) {
+    boolean[] marked = { false };
+    while (true) {
+      Node<E> pred = head;
+      for (int level = levelInUse.get(); level >= 0; level--) {
+        Node<E> current = pred.next[level].getReference();
+        while (current != null) {
+          Node<E> succ = current.next[level].get(marked);
+          if (marked[0]) {
+            current = succ;
+          } else if (item == null || !before(item, current.item, inclusive)) {
+            pred = current;
+            current = succ;
+          } else {
+            break;
+          }
+        }
+      }
+      if (pred == head) {
+        return null;
+      }
+      pred.next[0].get(marked);
+      if (!marked[0]) {
+        return pred;
+      }
+      // pred was deleted while we stood on it, look again
+    }
+  }
+
+  // true if a comes before b: a < b, or a <= b when equal items count
+  private static <E extends Comparable<? super E>> boolean before(E a, E b, boolean inclusive) {
+    int c = a.compareTo(b);
+    return inclusive ? c < 0 : c <= 0;
+  }
+
+  private static <E> E itemOf(Node<E> node) {
+    return node == null ? null : node.item;
+  }
+
+  private static <E> E checked(E item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Item is null");
+    }
+    return item;
+  }
+
+  // level i is used with probability 2^-(i+1)
+  private static int randomLevel() {
+    int bits = ThreadLocalRandom.current().nextInt() | (1 << (MAX_LEVEL - 1));
+    return Integer.numberOfTrailingZeros(bits);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <E> Node<E>[] newNodeArray() {
+    return (Node<E>[]) new Node<?>[MAX_LEVEL];
+  }
+
+  private static final class Node<E> {
+    final E item; // null only for the head
+    final AtomicMarkableReference<Node<E>>[] next;
+    final int topLevel;
+
+    @SuppressWarnings("unchecked")
+    Node(E item, int topLevel) {
+      this.item = item;
+      this.topLevel = topLevel;
+      next = (AtomicMarkableReference<Node<E>>[]) new AtomicMarkableReference<?>[topLevel + 1];
+      for (int i = 0; i <= topLevel; i++) {
+        next[i] = new AtomicMarkableReference<>(null, false);
+      }
+    }
+  }
+
+  /*
+   * Walks the bottom level for ascending ranges; descending ranges look up
+   * the predecessor of the last element returned each time, since the
+   * links only point forward.
+   */
+  private class RangeIterator implements Iterator<E> {
+    private final E from;
+    private final boolean fromInclusive;
+    private final E to;
+    private final boolean toInclusive;
+    private final boolean descending;
+    private Node<E> next;
+    private E last;
+    private boolean removeOK;
+
+    RangeIterator(E from, boolean fromInclusive, E to, boolean toInclusive, boolean descending) {
+      this.from = from;
+      this.fromInclusive = fromInclusive;
+      this.to = to;
+      this.toInclusive = toInclusive;
+      this.descending = descending;
+      next = descending ? floorNode(to, toInclusive) : ceilingNode(from, fromInclusive);
+      checkBound();
+    }
+
+    // drops next if it falls outside the far end of the range
+    private void checkBound() {
+      if (next != null) {
+        if (descending && from != null && before(next.item, from, fromInclusive)) {
+          next = null;
+        } else if (!descending && to != null && before(to, next.item, toInclusive)) {
+          next = null;
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public E next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      last = next.item;
+      if (descending) {
+        next = floorNode(last, false);
+      } else {
+        Node<E> node = next.next[0].getReference();
+        while (node != null && node.next[0].isMarked()) {
+          node = node.next[0].getReference(); // skip deleted nodes
+        }
+        next = node;
+      }
+      checkBound();
+      removeOK = true;
+      return last;
+    }
+
+    @Override
+    public void remove() {
+      if (!removeOK) {
+        throw new IllegalStateException();
+      }
+      LockFreeSkipListSet.this.remove(last);
+      removeOK = false;
+    }
+  }
+}
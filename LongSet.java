@@ -0,0 +1,75 @@
+import java.util.PrimitiveIterator;
+
+/**
+ * An interface that models a set of primitive longs.
+ *
+ * Sets have no implied order and duplicate items are not allowed.
+ * Implementations store the longs unboxed, so adding, testing and iterating
+ * do not allocate. Use asSet() to pass one where an ISet&lt;Long&gt; is
+ * expected.
+ */
+public interface LongSet {
+
+  /**
+   * Add an item to this set.
+   *
+   * @param item the item to be added to this set.
+   * @return true if this set changed as a result of this operation,
+   *         false otherwise.
+   */
+  public boolean add(long item);
+
+  /**
+   * Make this set empty.
+   * <br>
+   * pre: none
+   * <br>
+   * post: size() = 0
+   */
+  public void clear();
+
+  /**
+   * Determine if item is in this set.
+   *
+   * @param item element whose presence is being tested.
+   * @return true if this set contains the specified item, false otherwise.
+   */
+  public boolean contains(long item);
+
+  /**
+   * Return an iterator over the elements of this set. nextLong() does not
+   * box the elements.
+   * pre: none
+   *
+   * @return an iterator for the elements of this set
+   */
+  public PrimitiveIterator.OfLong iterator();
+
+  /**
+   * Remove the specified item from this set if it is present.
+   *
+   * @param item the item to remove from the set.
+   * @return true if this set changed as a result of this operation,
+   *         false otherwise
+   */
+  public boolean remove(long item);
+
+  /**
+   * Return the number of elements of this set.
+   * pre: none
+   *
+   * @return the number of items in this set
+   */
+  public int size();
+
+  /**
+   * Return a view of this set as an ISet of Longs. Changes to either
+   * are visible in the other.
+   * pre: none
+   *
+   * @return an ISet backed by this set
+   */
+  public default ISet<Long> asSet() {
+    return new LongSetAdapter(this);
+  }
+}
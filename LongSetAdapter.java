@@ -0,0 +1,156 @@
+/*
+ * Lets a LongSet be used where an ISet<Long> is expected.
+ *
+ * Every call is forwarded to the wrapped LongSet, so the two always agree.
+ * Elements are boxed only when they cross this boundary; operations between
+ * two adapters stay on primitive longs.
+ */
+
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+
+public class LongSetAdapter extends AbstractSet<Long> {
+
+  private final LongSet set;
+
+  /**
+   * create an ISet view of set.
+   *
+   * @param set != null
+   */
+  public LongSetAdapter(LongSet set) {
+    if (set == null) {
+      throw new IllegalArgumentException("Set is null");
+    }
+    this.set = set;
+  }
+
+  /**
+   * Return the LongSet this adapter forwards to.
+   *
+   * @return the wrapped LongSet
+   */
+  public LongSet intSet() {
+    return set;
+  }
+
+  @Override
+  public boolean add(Long item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Invalid item.");
+    }
+    return set.add(item);
+  }
+
+  @Override
+  public void clear() {
+    set.clear();
+  }
+
+  @Override
+  public boolean contains(Long item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Item is null");
+    }
+    return set.contains(item);
+  }
+
+  @Override
+  public Iterator<Long> iterator() {
+    return set.iterator();
+  }
+
+  @Override
+  public boolean remove(Long item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Item is null");
+    }
+    return set.remove(item);
+  }
+
+  @Override
+  public int size() {
+    return set.size();
+  }
+
+  @Override
+  public ISet<Long> intersection(ISet<Long> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    LongHashSet result = new LongHashSet(Math.min(size(), otherSet.size()));
+    PrimitiveIterator.OfLong itr = set.iterator();
+    while (itr.hasNext()) {
+      long e = itr.nextLong();
+      if (contains(otherSet, e)) {
+        result.add(e);
+      }
+    }
+    return result.asSet();
+  }
+
+  @Override
+  public ISet<Long> union(ISet<Long> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    LongHashSet result = new LongHashSet(size() + otherSet.size());
+    PrimitiveIterator.OfLong itr = set.iterator();
+    while (itr.hasNext()) {
+      result.add(itr.nextLong());
+    }
+    itr = primitiveIterator(otherSet);
+    while (itr.hasNext()) {
+      result.add(itr.nextLong());
+    }
+    return result.asSet();
+  }
+
+  @Override
+  public ISet<Long> difference(ISet<Long> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    LongHashSet result = new LongHashSet(size());
+    PrimitiveIterator.OfLong itr = set.iterator();
+    while (itr.hasNext()) {
+      long e = itr.nextLong();
+      if (!contains(otherSet, e)) {
+        result.add(e);
+      }
+    }
+    return result.asSet();
+  }
+
+  @Override
+  public Object clone() {
+    Object result = new LongSetAdapter(new LongHashSet());
+    return result;
+  }
+
+  // membership test that avoids boxing when other wraps a LongSet
+  private static boolean contains(ISet<Long> other, long item) {
+    if (other instanceof LongSetAdapter) {
+      return ((LongSetAdapter) other).set.contains(item);
+    }
+    return other.contains(item);
+  }
+
+  private static PrimitiveIterator.OfLong primitiveIterator(ISet<Long> other) {
+    if (other instanceof LongSetAdapter) {
+      return ((LongSetAdapter) other).set.iterator();
+    }
+    Iterator<Long> itr = other.iterator();
+    return new PrimitiveIterator.OfLong() {
+      @Override
+      public boolean hasNext() {
+        return itr.hasNext();
+      }
+
+      @Override
+      public long nextLong() {
+        return itr.next();
+      }
+    };
+  }
+}
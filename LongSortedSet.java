@@ -0,0 +1,151 @@
+/*
+ * A LongSet whose elements are kept in ascending order in a plain long[],
+ * the primitive counterpart of SortedSet.
+ */
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+public class LongSortedSet implements LongSet {
+
+  private static final int DEFAULT_CAPACITY = 10;
+
+  private long[] elements;
+  private int size;
+
+  /**
+   * create an empty LongSortedSet
+   */
+  public LongSortedSet() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * create an empty LongSortedSet able to hold capacity elements
+   * before it has to grow.
+   * <br>
+   * pre: capacity >= 0
+   *
+   * @param capacity the number of elements expected in this set
+   */
+  public LongSortedSet(int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Invalid capacity.");
+    }
+    elements = new long[capacity];
+  }
+
+  /**
+   * Return the smallest element in this LongSortedSet.
+   * <br>
+   * pre: size() != 0
+   *
+   * @return the smallest element in this LongSortedSet.
+   */
+  public long min() {
+    if (size == 0) {
+      throw new IllegalStateException("Set is Empty");
+    }
+    return elements[0];
+  }
+
+  /**
+   * Return the largest element in this LongSortedSet.
+   * <br>
+   * pre: size() != 0
+   *
+   * @return the largest element in this LongSortedSet.
+   */
+  public long max() {
+    if (size == 0) {
+      throw new IllegalStateException("Set is Empty");
+    }
+    return elements[size - 1];
+  }
+
+  @Override
+  public boolean add(long item) {
+    int index = Arrays.binarySearch(elements, 0, size, item);
+    if (index >= 0) {
+      return false;
+    }
+    index = -(index + 1);
+    if (size == elements.length) {
+      elements = Arrays.copyOf(elements, Math.max(DEFAULT_CAPACITY, size + (size >> 1)));
+    }
+    System.arraycopy(elements, index, elements, index + 1, size - index);
+    elements[index] = item;
+    size++;
+    return true;
+  }
+
+  @Override
+  public boolean contains(long item) {
+    return Arrays.binarySearch(elements, 0, size, item) >= 0;
+  }
+
+  @Override
+  public boolean remove(long item) {
+    int index = Arrays.binarySearch(elements, 0, size, item);
+    if (index < 0) {
+      return false;
+    }
+    removeAt(index);
+    return true;
+  }
+
+  private void removeAt(int index) {
+    System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+    size--;
+  }
+
+  @Override
+  public void clear() {
+    size = 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  // Elements are returned in ascending order.
+  @Override
+  public PrimitiveIterator.OfLong iterator() {
+    PrimitiveIterator.OfLong itr = new PrimitiveIterator.OfLong() {
+      private int current;
+      private boolean removeOK;
+
+      @Override
+      public boolean hasNext() {
+        return current < size;
+      }
+
+      @Override
+      public long nextLong() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        removeOK = true;
+        return elements[current++];
+      }
+
+      @Override
+      public void remove() {
+        if (!removeOK) {
+          throw new IllegalStateException();
+        }
+        current--;
+        removeAt(current);
+        removeOK = false;
+      }
+    };
+    return itr;
+  }
+
+  @Override
+  public String toString() {
+    return asSet().toString();
+  }
+}
@@ -0,0 +1,447 @@
+/*
+ * An ISet of fixed-width keys whose hash table lives outside the Java heap.
+ *
+ * Keys are turned into bytes by a KeyCodec and stored in direct ByteBuffers,
+ * so a set of hundreds of millions of keys is a handful of objects as far as
+ * the garbage collector is concerned. Each slot is one state byte (empty,
+ * full or removed) followed by the encoded key. The table uses linear
+ * probing; it is split over several buffers once it outgrows the 2GB a
+ * single ByteBuffer can address.
+ *
+ * Hashing and equality work on the encoded bytes, so lookups and rehashing
+ * never decode a key. Keys are only decoded when iterating.
+ */
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A hash based ISet whose storage is off-heap.
+ * <br>
+ * The memory belongs to the set until close() is called. After that every
+ * operation throws IllegalStateException. close(), clear() and resizing
+ * free the buffers they drop right away through sun.misc.Unsafe's
+ * invokeCleaner. On a JVM without it (no jdk.unsupported module) the
+ * memory is only returned when the garbage collector collects those few
+ * buffer objects, which with a small heap can be a long time. Results of
+ * union, intersection and difference are new OffHeapSets and must be
+ * closed as well.
+ * <br>
+ * Not thread safe.
+ *
+ * @param <E> The data type of the elements of this set.
+ */
+public class OffHeapSet<E> extends AbstractSet<E> implements AutoCloseable {
+
+  private static final int DEFAULT_CAPACITY = 1024;
+  private static final float LOAD_FACTOR = 0.6f;
+  private static final int MAX_CAPACITY = 1 << 30;
+  private static final int MAX_PAGE_BYTES = 1 << 30;
+
+  private static final byte EMPTY = 0;
+  private static final byte FULL = 1;
+  private static final byte REMOVED = 2;
+
+  // Unsafe.invokeCleaner bound to the Unsafe instance, or null if missing
+  private static final MethodHandle INVOKE_CLEANER = findCleaner();
+
+  private final KeyCodec<E> codec;
+  private final int width;
+  private final int slotWidth;
+  private final byte[] key; // scratch for the key being looked up
+  private final byte[] slotKey; // scratch for a key read from the table
+
+  private ByteBuffer[] pages;
+  private int pageShift; // slot index >>> pageShift is the page
+  private int capacity;
+  private int size;
+  private int used; // full + removed slots
+  private long fingerprint; // sum of ISet.fingerprintOf over the elements
+
+  /**
+   * create an empty OffHeapSet.
+   * <br>
+   * pre: codec != null
+   *
+   * @param codec converts the keys to and from bytes
+   */
+  public OffHeapSet(KeyCodec<E> codec) {
+    this(codec, 0);
+  }
+
+  /**
+   * create an empty OffHeapSet able to hold expectedSize keys before it
+   * has to resize.
+   * <br>
+   * pre: codec != null, expectedSize >= 0
+   *
+   * @param codec        converts the keys to and from bytes
+   * @param expectedSize the number of keys expected in this set
+   */
+  public OffHeapSet(KeyCodec<E> codec, int expectedSize) {
+    if (codec == null || codec.width() <= 0) {
+      throw new IllegalArgumentException("Invalid codec.");
+    }
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("Invalid size.");
+    }
+    this.codec = codec;
+    width = codec.width();
+    slotWidth = width + 1;
+    key = new byte[width];
+    slotKey = new byte[width];
+    int capacity = DEFAULT_CAPACITY;
+    while (capacity < MAX_CAPACITY && capacity * LOAD_FACTOR < expectedSize) {
+      capacity <<= 1;
+    }
+    allocate(capacity);
+  }
+
+  @Override
+  public boolean add(E item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Invalid item.");
+    }
+    checkOpen();
+    codec.encode(item, key);
+    int mask = capacity - 1;
+    int index = hash(key) & mask;
+    int firstRemoved = -1;
+    byte state;
+    while ((state = state(index)) != EMPTY) {
+      if (state == REMOVED) {
+        if (firstRemoved < 0) {
+          firstRemoved = index;
+        }
+      } else if (keyEquals(index, key)) {
+        return false;
+      }
+      index = (index + 1) & mask;
+    }
+    if (firstRemoved >= 0) {
+      index = firstRemoved;
+    } else {
+      used++;
+    }
+    write(index, key);
+    size++;
+    fingerprint += ISet.fingerprintOf(item);
+    if (used > capacity * LOAD_FACTOR) {
+      rehash();
+    }
+    return true;
+  }
+
+  @Override
+  public boolean contains(E item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Item is null");
+    }
+    checkOpen();
+    codec.encode(item, key);
+    return find(key) >= 0;
+  }
+
+  @Override
+  public boolean remove(E item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Item is null");
+    }
+    checkOpen();
+    codec.encode(item, key);
+    int index = find(key);
+    if (index < 0) {
+      return false;
+    }
+    setState(index, REMOVED);
+    size--;
+    fingerprint -= ISet.fingerprintOf(item);
+    return true;
+  }
+
+  @Override
+  public void clear() {
+    checkOpen();
+    ByteBuffer[] oldPages = pages;
+    allocate(DEFAULT_CAPACITY);
+    free(oldPages);
+    size = 0;
+    used = 0;
+    fingerprint = 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  // kept up to date by add and remove, O(1)
+  @Override
+  public long fingerprint() {
+    return fingerprint;
+  }
+
+  /**
+   * Free the off-heap table. The memory is returned at once where the JVM
+   * allows it, see the class comment. The set may not be used afterwards.
+   * Calling close() more than once has no effect.
+   */
+  @Override
+  public void close() {
+    if (pages != null) {
+      free(pages);
+    }
+    pages = null;
+    size = 0;
+    used = 0;
+    fingerprint = 0;
+  }
+
+  /**
+   * Determine if this set has been closed.
+   *
+   * @return true if close() has been called
+   */
+  public boolean isClosed() {
+    return pages == null;
+  }
+
+  // Keys are decoded as they are returned.
+  @Override
+  public Iterator<E> iterator() {
+    checkOpen();
+    Iterator<E> itr = new Iterator<E>() {
+      private final byte[] buffer = new byte[width];
+      private int current = advance(0);
+      private int last;
+      private boolean removeOK;
+
+      private int advance(int index) {
+        while (index < capacity && state(index) != FULL) {
+          index++;
+        }
+        return index;
+      }
+
+      @Override
+      public boolean hasNext() {
+        checkOpen();
+        return current < capacity;
+      }
+
+      @Override
+      public E next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        last = current;
+        read(current, buffer);
+        current = advance(current + 1);
+        removeOK = true;
+        return codec.decode(buffer);
+      }
+
+      @Override
+      public void remove() {
+        if (!removeOK) {
+          throw new IllegalStateException();
+        }
+        setState(last, REMOVED);
+        size--;
+        fingerprint -= ISet.fingerprintOf(codec.decode(buffer));
+        removeOK = false;
+      }
+    };
+    return itr;
+  }
+
+  @Override
+  public ISet<E> intersection(ISet<E> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    OffHeapSet<E> result = new OffHeapSet<>(codec, Math.min(size, otherSet.size()));
+    for (E e : this) {
+      if (otherSet.contains(e)) {
+        result.add(e);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public ISet<E> union(ISet<E> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    OffHeapSet<E> result = new OffHeapSet<>(codec, size + otherSet.size());
+    result.addAll(this);
+    result.addAll(otherSet);
+    return result;
+  }
+
+  @Override
+  public ISet<E> difference(ISet<E> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    OffHeapSet<E> result = new OffHeapSet<>(codec, size);
+    for (E e : this) {
+      if (!otherSet.contains(e)) {
+        result.add(e);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public Object clone() {
+    Object result = new OffHeapSet<>(codec);
+    return result;
+  }
+
+  private void checkOpen() {
+    if (pages == null) {
+      throw new IllegalStateException("Set is closed");
+    }
+  }
+
+  // returns the slot holding the encoded key, or -1
+  private int find(byte[] encoded) {
+    int mask = capacity - 1;
+    int index = hash(encoded) & mask;
+    byte state;
+    while ((state = state(index)) != EMPTY) {
+      if (state == FULL && keyEquals(index, encoded)) {
+        return index;
+      }
+      index = (index + 1) & mask;
+    }
+    return -1;
+  }
+
+  // Builds a new table sized from the live keys and moves them over.
+  private void rehash() {
+    ByteBuffer[] oldPages = pages;
+    int oldShift = pageShift;
+    int oldCapacity = capacity;
+    int newCapacity = capacity;
+    if (size >= capacity * LOAD_FACTOR / 2) {
+      if (capacity == MAX_CAPACITY) {
+        throw new IllegalStateException("Set is full");
+      }
+      newCapacity = capacity * 2;
+    }
+    allocate(newCapacity);
+    used = 0;
+    int mask = capacity - 1;
+    for (int i = 0; i < oldCapacity; i++) {
+      ByteBuffer page = oldPages[i >>> oldShift];
+      int offset = (i & ((1 << oldShift) - 1)) * slotWidth;
+      if (page.get(offset) == FULL) {
+        page.get(offset + 1, slotKey);
+        int index = hash(slotKey) & mask;
+        while (state(index) != EMPTY) {
+          index = (index + 1) & mask;
+        }
+        write(index, slotKey);
+        used++;
+      }
+    }
+    free(oldPages);
+  }
+
+  private void allocate(int capacity) {
+    this.capacity = capacity;
+    int slotsPerPage = Integer.highestOneBit(MAX_PAGE_BYTES / slotWidth);
+    slotsPerPage = Math.min(slotsPerPage, capacity);
+    pageShift = Integer.numberOfTrailingZeros(slotsPerPage);
+    pages = new ByteBuffer[capacity / slotsPerPage];
+    for (int i = 0; i < pages.length; i++) {
+      pages[i] = ByteBuffer.allocateDirect(slotsPerPage * slotWidth); // zeroed, so all EMPTY
+    }
+  }
+
+  // Every read goes through the pages field, so nothing can touch a page
+  // after it has been replaced or the set closed.
+  private static void free(ByteBuffer[] pages) {
+    if (INVOKE_CLEANER == null) {
+      return; // left to the garbage collector
+    }
+    for (ByteBuffer page : pages) {
+      try {
+        INVOKE_CLEANER.invokeExact(page);
+      } catch (RuntimeException | Error e) {
+        throw e;
+      } catch (Throwable e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+  private static MethodHandle findCleaner() {
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      MethodHandle cleaner = MethodHandles.lookup().findVirtual(unsafeClass, "invokeCleaner",
+          MethodType.methodType(void.class, ByteBuffer.class));
+      return cleaner.bindTo(theUnsafe.get(null));
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null; // older JDK or no jdk.unsupported module
+    }
+  }
+
+  private ByteBuffer page(int index) {
+    return pages[index >>> pageShift];
+  }
+
+  private int offset(int index) {
+    return (index & ((1 << pageShift) - 1)) * slotWidth;
+  }
+
+  private byte state(int index) {
+    return page(index).get(offset(index));
+  }
+
+  private void setState(int index, byte state) {
+    page(index).put(offset(index), state);
+  }
+
+  private void write(int index, byte[] encoded) {
+    ByteBuffer page = page(index);
+    int offset = offset(index);
+    page.put(offset, FULL);
+    page.put(offset + 1, encoded);
+  }
+
+  private void read(int index, byte[] dest) {
+    page(index).get(offset(index) + 1, dest);
+  }
+
+  private boolean keyEquals(int index, byte[] encoded) {
+    read(index, slotKey);
+    return Arrays.equals(slotKey, encoded);
+  }
+
+  // 64 bit mix of the encoded bytes, folded to an int
+  private static int hash(byte[] encoded) {
+    long h = 0x9E3779B97F4A7C15L;
+    long chunk = 0;
+    for (int i = 0; i < encoded.length; i++) {
+      chunk = (chunk << 8) | (encoded[i] & 0xFF);
+      if ((i & 7) == 7 || i == encoded.length - 1) {
+        h = (h ^ chunk) * 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 31;
+        chunk = 0;
+      }
+    }
+    return (int) (h ^ (h >>> 32));
+  }
+}
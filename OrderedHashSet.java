@@ -0,0 +1,390 @@
+/*
+ * A hash set that iterates in insertion order, laid out like the "compact
+ * dict" of CPython 3.6.
+ *
+ * The elements sit in a dense array in the order they were added. Lookups
+ * go through a separate open addressing table of positions in that array,
+ * kept at most 2/3 full. The index table is the only sparse part, and its
+ * slots are as narrow as the capacity allows: a byte while there are at
+ * most 255 entries, a short up to 65535, an int beyond. A set of a few
+ * hundred elements therefore costs 4 bytes a reference plus about 3 bytes
+ * of index per entry, against 4 bytes for an ArrayList; from 65536 entries
+ * the index takes about 6 bytes per entry. Hash codes are not cached, so
+ * a rebuild of the index calls hashCode() again.
+ *
+ * Removing an element leaves a null hole in the dense array; its index
+ * slot keeps pointing at the hole, which lookups step over. Once holes make
+ * up half of the used entries, the live elements are slid to the front in
+ * one pass and the index table is rebuilt, so iteration stays about as
+ * dense as an ArrayList and every operation is amortized O(1).
+ */
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+
+/**
+ * An ISet with O(1) add, contains and remove whose iterator returns the
+ * elements in the order they were first added. A drop-in replacement for
+ * UnsortedSet where that order matters.
+ *
+ * @param <E> The data type of the elements of this set.
+ */
+public class OrderedHashSet<E> extends AbstractSet<E> {
+
+  private static final int DEFAULT_CAPACITY = 8;
+  private static final int MIN_COMPACT = 16;
+  private static final int EMPTY = 0;
+
+  private Object[] entries; // insertion order, null where removed
+  // position + 1 of an entry, or EMPTY; only the one sized for
+  // entries.length is non null
+  private byte[] index8;
+  private short[] index16;
+  private int[] index32;
+  private int mask; // index length - 1
+  private int count; // entries used, including holes
+  private int size;
+  private long fingerprint; // sum of ISet.fingerprintOf over the elements
+
+  /**
+   * create an empty OrderedHashSet
+   */
+  public OrderedHashSet() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * create an empty OrderedHashSet able to hold expectedSize elements
+   * before it has to grow.
+   * <br>
+   * pre: expectedSize >= 0
+   *
+   * @param expectedSize the number of elements expected in this set
+   */
+  public OrderedHashSet(int expectedSize) {
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("Invalid size.");
+    }
+    allocate(Math.max(DEFAULT_CAPACITY, expectedSize));
+  }
+
+  /**
+   * create an OrderedHashSet holding the elements of other, in other's
+   * iteration order.
+   * <br>
+   * pre: other != null
+   *
+   * @param other the elements of the new set
+   */
+  public OrderedHashSet(ISet<E> other) {
+    this(other == null ? 0 : other.size());
+    addAll(other);
+  }
+
+  @Override
+  public boolean add(E item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Invalid item.");
+    }
+    int hash = hash(item);
+    if (find(item, hash) >= 0) {
+      return false;
+    }
+    if (count == entries.length) {
+      if (size <= count / 2) {
+        compact(); // plenty of holes to reuse
+      } else {
+        resize(entries.length * 2);
+      }
+    }
+    entries[count] = item;
+    insertIndex(hash, count);
+    count++;
+    size++;
+    fingerprint += ISet.fingerprintOf(item);
+    return true;
+  }
+
+  @Override
+  public boolean contains(E item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Item is null");
+    }
+    return find(item, hash(item)) >= 0;
+  }
+
+  @Override
+  public boolean remove(E item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Item is null");
+    }
+    int position = find(item, hash(item));
+    if (position < 0) {
+      return false;
+    }
+    removeAt(position);
+    if (count >= MIN_COMPACT && size <= count / 2) {
+      compact();
+    }
+    return true;
+  }
+
+  // One pass marking holes, then one compaction.
+  @Override
+  @SuppressWarnings("unchecked")
+  public boolean removeIf(Predicate<? super E> filter) {
+    if (filter == null) {
+      throw new IllegalArgumentException("Filter is null");
+    }
+    int oldSize = size;
+    for (int i = 0; i < count; i++) {
+      if (entries[i] != null && filter.test((E) entries[i])) {
+        removeAt(i);
+      }
+    }
+    if (size == oldSize) {
+      return false;
+    }
+    compact();
+    return true;
+  }
+
+  @Override
+  public boolean removeAll(ISet<E> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    if (otherSet == this) {
+      boolean modified = size > 0;
+      clear();
+      return modified;
+    }
+    return removeIf(otherSet::contains);
+  }
+
+  @Override
+  public void clear() {
+    allocate(DEFAULT_CAPACITY);
+    count = 0;
+    size = 0;
+    fingerprint = 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  // kept up to date by add and remove, O(1)
+  @Override
+  public long fingerprint() {
+    return fingerprint;
+  }
+
+  // Holes are skipped; removing through the iterator never compacts.
+  @Override
+  public Iterator<E> iterator() {
+    Iterator<E> itr = new Iterator<E>() {
+      private int current = advance(0);
+      private int last;
+      private boolean removeOK;
+
+      private int advance(int position) {
+        while (position < count && entries[position] == null) {
+          position++;
+        }
+        return position;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return current < count;
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public E next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        last = current;
+        current = advance(current + 1);
+        removeOK = true;
+        return (E) entries[last];
+      }
+
+      @Override
+      public void remove() {
+        if (!removeOK) {
+          throw new IllegalStateException();
+        }
+        removeAt(last);
+        removeOK = false;
+      }
+    };
+    return itr;
+  }
+
+  @Override
+  public Spliterator<E> spliterator() {
+    return Spliterators.spliterator(iterator(), size,
+        Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+  }
+
+  // The results keep this set's order, followed by otherSet's for union.
+  @Override
+  public ISet<E> intersection(ISet<E> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    OrderedHashSet<E> result = new OrderedHashSet<>(Math.min(size, otherSet.size()));
+    for (E e : this) {
+      if (otherSet.contains(e)) {
+        result.add(e);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public ISet<E> union(ISet<E> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    OrderedHashSet<E> result = new OrderedHashSet<>(size + otherSet.size());
+    result.addAll(this);
+    result.addAll(otherSet);
+    return result;
+  }
+
+  @Override
+  public ISet<E> difference(ISet<E> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    OrderedHashSet<E> result = new OrderedHashSet<>(size);
+    for (E e : this) {
+      if (!otherSet.contains(e)) {
+        result.add(e);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public Object clone() {
+    Object result = new OrderedHashSet<>();
+    return result;
+  }
+
+  // returns the position of item in entries, or -1
+  private int find(Object item, int hash) {
+    int slot = hash & mask;
+    int stored;
+    while ((stored = slot(slot)) != EMPTY) {
+      Object entry = entries[stored - 1];
+      if (entry != null && entry.equals(item)) {
+        return stored - 1;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  private int slot(int slot) {
+    if (index8 != null) {
+      return index8[slot] & 0xFF;
+    }
+    return index16 != null ? index16[slot] & 0xFFFF : index32[slot];
+  }
+
+  // the index slot keeps pointing at the hole until the next compaction
+  private void removeAt(int position) {
+    fingerprint -= ISet.fingerprintOf(entries[position]);
+    entries[position] = null;
+    size--;
+  }
+
+  private void insertIndex(int hash, int position) {
+    int slot = hash & mask;
+    while (slot(slot) != EMPTY) {
+      slot = (slot + 1) & mask;
+    }
+    if (index8 != null) {
+      index8[slot] = (byte) (position + 1);
+    } else if (index16 != null) {
+      index16[slot] = (short) (position + 1);
+    } else {
+      index32[slot] = position + 1;
+    }
+  }
+
+  // slides the live entries to the front, keeping their order
+  private void compact() {
+    int kept = 0;
+    for (int i = 0; i < count; i++) {
+      if (entries[i] != null) {
+        entries[kept++] = entries[i];
+      }
+    }
+    Arrays.fill(entries, kept, count, null);
+    count = kept;
+    allocateIndex(mask + 1);
+    rebuildIndex();
+  }
+
+  private void resize(int capacity) {
+    int length = indexLength(capacity);
+    entries = Arrays.copyOf(entries, length / 3 * 2);
+    allocateIndex(length);
+    rebuildIndex();
+  }
+
+  private void rebuildIndex() {
+    for (int i = 0; i < count; i++) {
+      if (entries[i] != null) {
+        insertIndex(hash(entries[i]), i);
+      }
+    }
+  }
+
+  // room for at least capacity entries, the index 2/3 full when they are used
+  private void allocate(int capacity) {
+    int length = indexLength(capacity);
+    entries = new Object[length / 3 * 2];
+    allocateIndex(length);
+  }
+
+  // a new, empty index with the narrowest slots that fit entries.length
+  private void allocateIndex(int length) {
+    index8 = null;
+    index16 = null;
+    index32 = null;
+    if (entries.length <= 0xFF) {
+      index8 = new byte[length];
+    } else if (entries.length <= 0xFFFF) {
+      index16 = new short[length];
+    } else {
+      index32 = new int[length];
+    }
+    mask = length - 1;
+  }
+
+  // smallest power of two index holding capacity entries at 2/3 load
+  private static int indexLength(int capacity) {
+    int length = 8;
+    while (length / 3 * 2 < capacity) {
+      length <<= 1;
+    }
+    return length;
+  }
+
+  private static int hash(Object item) {
+    int h = item.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
@@ -0,0 +1,314 @@
+/*
+ * Fork/join versions of the ISet algebra.
+ *
+ * Each operation splits the operand it has to scan with its spliterator()
+ * and lets the pool probe the pieces against the other set concurrently.
+ * The result is a HashSet sized for the largest possible answer before the
+ * scan starts, and every leaf task puts its hits straight into its table
+ * with compare and set (HashSet.insertDistinct), so nothing is copied or
+ * merged after the scan and no step runs on one thread over all of the
+ * elements. How evenly the scan divides depends on the scanned set's
+ * spliterator: HashSet, SortedSet and UnsortedSet split by index range,
+ * most other sets fall back to copying iterator batches.
+ * Below THRESHOLD elements the sequential method of the set is used
+ * instead, as the fork/join overhead would outweigh the gain.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Parallel union, intersection, difference and containsAll for any ISet.
+ * <br>
+ * Both sets are only read, but from several threads at once, so their
+ * contains() and spliterator() must be safe to use concurrently and neither
+ * set may be changed until the operation returns. The sets in this package
+ * allow that while nothing writes to them, except OffHeapSet, whose lookups
+ * share a scratch buffer, and a BloomFilteredSet wrapped around a set that
+ * does not.
+ * <br>
+ * The results are HashSets, also below THRESHOLD, where the sequential
+ * result is copied into one unless it is a HashSet already.
+ */
+public final class ParallelSetOps {
+
+  /**
+   * The size of the scanned operand below which the sequential methods
+   * are used.
+   */
+  public static final int THRESHOLD = 1 << 14;
+
+  private static final int MIN_LEAF = 1 << 11;
+  private static final int LEAVES_PER_THREAD = 8;
+
+  private ParallelSetOps() {
+  }
+
+  /**
+   * create a new set that is the intersection of a and b using the common
+   * pool.
+   *
+   * @param a != null
+   * @param b != null
+   * @return a set of the elements in both a and b
+   */
+  public static <E> ISet<E> intersection(ISet<E> a, ISet<E> b) {
+    return intersection(a, b, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * create a new set that is the intersection of a and b. The larger set
+   * is split and its elements are looked up in the smaller one.
+   * <br>
+   * pre: a != null, b != null, pool != null
+   *
+   * @param a    != null
+   * @param b    != null
+   * @param pool the pool that runs the lookups
+   * @return a set of the elements in both a and b
+   */
+  public static <E> ISet<E> intersection(ISet<E> a, ISet<E> b, ForkJoinPool pool) {
+    check(a, b, pool);
+    ISet<E> larger = a.size() >= b.size() ? a : b;
+    ISet<E> smaller = larger == a ? b : a;
+    if (larger.size() < THRESHOLD) {
+      return asHashSet(a.intersection(b));
+    }
+    HashSet<E> result = new HashSet<>(smaller.size());
+    scan(larger, smaller, true, result, pool);
+    return result;
+  }
+
+  /**
+   * create a new set that is the union of a and b using the common pool.
+   *
+   * @param a != null
+   * @param b != null
+   * @return a set of the elements in a or b
+   */
+  public static <E> ISet<E> union(ISet<E> a, ISet<E> b) {
+    return union(a, b, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * create a new set that is the union of a and b. The smaller set is
+   * copied in parallel, then the larger set is split and its elements
+   * missing from the smaller one are added.
+   * <br>
+   * pre: a != null, b != null, pool != null
+   *
+   * @param a    != null
+   * @param b    != null
+   * @param pool the pool that runs the lookups
+   * @return a set of the elements in a or b
+   */
+  public static <E> ISet<E> union(ISet<E> a, ISet<E> b, ForkJoinPool pool) {
+    check(a, b, pool);
+    ISet<E> larger = a.size() >= b.size() ? a : b;
+    ISet<E> smaller = larger == a ? b : a;
+    if (larger.size() < THRESHOLD) {
+      return asHashSet(a.union(b));
+    }
+    HashSet<E> result = new HashSet<>(a.size() + b.size());
+    scan(smaller, null, true, result, pool);
+    scan(larger, smaller, false, result, pool);
+    return result;
+  }
+
+  /**
+   * create a new set that is the difference of a and b using the common
+   * pool.
+   *
+   * @param a != null
+   * @param b != null
+   * @return a set of the elements in a but not in b
+   */
+  public static <E> ISet<E> difference(ISet<E> a, ISet<E> b) {
+    return difference(a, b, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * create a new set that is the difference of a and b. a is split and its
+   * elements are looked up in b.
+   * <br>
+   * pre: a != null, b != null, pool != null
+   *
+   * @param a    != null
+   * @param b    != null
+   * @param pool the pool that runs the lookups
+   * @return a set of the elements in a but not in b
+   */
+  public static <E> ISet<E> difference(ISet<E> a, ISet<E> b, ForkJoinPool pool) {
+    check(a, b, pool);
+    if (a.size() < THRESHOLD) {
+      return asHashSet(a.difference(b));
+    }
+    HashSet<E> result = new HashSet<>(a.size());
+    scan(a, b, false, result, pool);
+    return result;
+  }
+
+  /**
+   * Determine if all of the elements of b are in a, using the common pool.
+   *
+   * @param a != null
+   * @param b != null
+   * @return true if a contains every element of b
+   */
+  public static <E> boolean containsAll(ISet<E> a, ISet<E> b) {
+    return containsAll(a, b, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Determine if all of the elements of b are in a. b is split and looked
+   * up in a; every task stops as soon as one element is found missing.
+   * <br>
+   * pre: a != null, b != null, pool != null
+   *
+   * @param a    != null
+   * @param b    != null
+   * @param pool the pool that runs the lookups
+   * @return true if a contains every element of b
+   */
+  public static <E> boolean containsAll(ISet<E> a, ISet<E> b, ForkJoinPool pool) {
+    check(a, b, pool);
+    if (b.size() > a.size()) {
+      return false;
+    }
+    if (b.size() < THRESHOLD) {
+      return a.containsAll(b);
+    }
+    AtomicBoolean missing = new AtomicBoolean();
+    pool.invoke(new ContainsAll<>(b.spliterator(), leafSize(b.size(), pool), a, missing));
+    return !missing.get();
+  }
+
+  private static void check(ISet<?> a, ISet<?> b, ForkJoinPool pool) {
+    if (a == null || b == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    if (pool == null) {
+      throw new IllegalArgumentException("Pool is null");
+    }
+  }
+
+  /*
+   * Adds to result the elements of scanned that probed contains
+   * (keepContained) or does not contain (!keepContained); all of them if
+   * probed is null. They must not be in result already.
+   */
+  private static <E> void scan(ISet<E> scanned, ISet<E> probed, boolean keepContained,
+      HashSet<E> result, ForkJoinPool pool) {
+    LongAdder count = new LongAdder();
+    LongAdder fingerprint = new LongAdder();
+    pool.invoke(new Scan<>(scanned.spliterator(), leafSize(scanned.size(), pool),
+        probed, keepContained, result, count, fingerprint));
+    result.insertedDistinct(count.intValue(), fingerprint.sum());
+  }
+
+  private static <E> ISet<E> asHashSet(ISet<E> set) {
+    return set.getClass() == HashSet.class ? set : new HashSet<>(set);
+  }
+
+  private static int leafSize(int n, ForkJoinPool pool) {
+    return Math.max(MIN_LEAF, n / (pool.getParallelism() * LEAVES_PER_THREAD));
+  }
+
+  /*
+   * Splits source down to about leafSize elements a piece, forking the
+   * split off parts, and inserts the kept elements of each piece into
+   * result. Each leaf adds its count and fingerprint sum once at the end.
+   */
+  @SuppressWarnings("serial")
+  private static class Scan<E> extends RecursiveAction {
+    private final Spliterator<E> source;
+    private final int leafSize;
+    private final ISet<E> probed;
+    private final boolean keepContained;
+    private final HashSet<E> result;
+    private final LongAdder count;
+    private final LongAdder fingerprint;
+    private int hits;
+    private long hitPrint;
+
+    Scan(Spliterator<E> source, int leafSize, ISet<E> probed, boolean keepContained,
+        HashSet<E> result, LongAdder count, LongAdder fingerprint) {
+      this.source = source;
+      this.leafSize = leafSize;
+      this.probed = probed;
+      this.keepContained = keepContained;
+      this.result = result;
+      this.count = count;
+      this.fingerprint = fingerprint;
+    }
+
+    @Override
+    protected void compute() {
+      List<Scan<E>> forked = new ArrayList<>();
+      Spliterator<E> prefix;
+      while (source.estimateSize() > leafSize && (prefix = source.trySplit()) != null) {
+        Scan<E> task = new Scan<>(prefix, leafSize, probed, keepContained, result, count, fingerprint);
+        task.fork();
+        forked.add(task);
+      }
+      source.forEachRemaining(this::visit);
+      count.add(hits);
+      fingerprint.add(hitPrint);
+      for (Scan<E> task : forked) {
+        task.join();
+      }
+    }
+
+    private void visit(E e) {
+      if (probed == null || probed.contains(e) == keepContained) {
+        result.insertDistinct(e);
+        hits++;
+        hitPrint += ISet.fingerprintOf(e);
+      }
+    }
+  }
+
+  // Sets missing once any element of source is not in probed.
+  @SuppressWarnings("serial")
+  private static class ContainsAll<E> extends RecursiveAction {
+    private final Spliterator<E> source;
+    private final int leafSize;
+    private final ISet<E> probed;
+    private final AtomicBoolean missing;
+
+    ContainsAll(Spliterator<E> source, int leafSize, ISet<E> probed, AtomicBoolean missing) {
+      this.source = source;
+      this.leafSize = leafSize;
+      this.probed = probed;
+      this.missing = missing;
+    }
+
+    @Override
+    protected void compute() {
+      List<ContainsAll<E>> forked = new ArrayList<>();
+      Spliterator<E> prefix;
+      while (!missing.get() && source.estimateSize() > leafSize && (prefix = source.trySplit()) != null) {
+        ContainsAll<E> task = new ContainsAll<>(prefix, leafSize, probed, missing);
+        task.fork();
+        forked.add(task);
+      }
+      while (!missing.get() && source.tryAdvance(this::check)) {
+        // check sets missing
+      }
+      for (ContainsAll<E> task : forked) {
+        task.join();
+      }
+    }
+
+    private void check(E e) {
+      if (!probed.contains(e)) {
+        missing.set(true);
+      }
+    }
+  }
+}
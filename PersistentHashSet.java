@@ -0,0 +1,650 @@
+/*
+ * A persistent (immutable) hash array mapped trie implementation of ISet.
+ *
+ * Each node covers 5 bits of an element's hash: a 32 bit bitmap records
+ * which of the 32 possible slots are in use and a compact array holds, in
+ * slot order, either an element or a child node for each of them. Elements
+ * whose full hashes are equal share a collision node.
+ *
+ * plus() and minus() copy only the O(log32 n) nodes on the path to the
+ * changed slot; every other node is shared with the old version. A Builder
+ * owns the nodes it creates (they carry its edit token) and updates those in
+ * place, so bulk construction does not copy a path per element.
+ */
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable ISet. Every version can be shared freely between threads.
+ * <br>
+ * The ISet mutators (add, remove, clear) throw
+ * UnsupportedOperationException; use plus() and minus(), which return a
+ * new version and leave this one untouched, or a Builder for bulk changes.
+ *
+ * @param <E> The data type of the elements of this set.
+ */
+public final class PersistentHashSet<E> extends AbstractSet<E> {
+
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+
+  private final Node root; // null when empty
+  private final int size;
+  private final long fingerprint; // sum of ISet.fingerprintOf over the elements
+
+  /**
+   * create an empty PersistentHashSet
+   */
+  public PersistentHashSet() {
+    this(null, 0, 0);
+  }
+
+  private PersistentHashSet(Node root, int size, long fingerprint) {
+    this.root = root;
+    this.size = size;
+    this.fingerprint = fingerprint;
+  }
+
+  /**
+   * create a PersistentHashSet holding the elements of other.
+   * <br>
+   * pre: other != null
+   *
+   * @param other the elements of the new set
+   * @return a PersistentHashSet with the same elements as other
+   */
+  public static <E> PersistentHashSet<E> of(ISet<E> other) {
+    if (other == null) {
+      throw new IllegalArgumentException("Set is null");
+    }
+    if (other instanceof PersistentHashSet) {
+      return (PersistentHashSet<E>) other;
+    }
+    Builder<E> builder = new Builder<>();
+    for (E e : other) {
+      builder.add(e);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Return a set with the elements of this set plus item.
+   * This set is not changed.
+   * <br>
+   * pre: item != null
+   *
+   * @param item the item to add
+   * @return this set if item was already present, otherwise a new set
+   */
+  public PersistentHashSet<E> plus(E item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Invalid item.");
+    }
+    boolean[] changed = { false };
+    Node newRoot = add(root, null, item, changed);
+    if (!changed[0]) {
+      return this;
+    }
+    return new PersistentHashSet<>(newRoot, size + 1, fingerprint + ISet.fingerprintOf(item));
+  }
+
+  /**
+   * Return a set with the elements of this set except item.
+   * This set is not changed.
+   * <br>
+   * pre: item != null
+   *
+   * @param item the item to remove
+   * @return this set if item was not present, otherwise a new set
+   */
+  public PersistentHashSet<E> minus(E item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Item is null");
+    }
+    boolean[] changed = { false };
+    Node newRoot = remove(root, null, item, changed);
+    if (!changed[0]) {
+      return this;
+    }
+    return new PersistentHashSet<>(newRoot, size - 1, fingerprint - ISet.fingerprintOf(item));
+  }
+
+  /**
+   * Return a Builder that starts out with the elements of this set.
+   * This set is not affected by changes made through the Builder.
+   *
+   * @return a new Builder
+   */
+  public Builder<E> toBuilder() {
+    return new Builder<>(root, size, fingerprint);
+  }
+
+  @Override
+  public boolean contains(E item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Item is null");
+    }
+    return root != null && root.contains(item, hash(item), 0);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  // carried from set to set by plus and minus, O(1)
+  @Override
+  public long fingerprint() {
+    return fingerprint;
+  }
+
+  @Override
+  public boolean add(E item) {
+    throw new UnsupportedOperationException("PersistentHashSet is immutable, use plus()");
+  }
+
+  @Override
+  public boolean remove(E item) {
+    throw new UnsupportedOperationException("PersistentHashSet is immutable, use minus()");
+  }
+
+  @Override
+  public void clear() {
+    throw new UnsupportedOperationException("PersistentHashSet is immutable");
+  }
+
+  // The iterator does not support remove.
+  @Override
+  public Iterator<E> iterator() {
+    return new NodeIterator<>(root);
+  }
+
+  @Override
+  public ISet<E> union(ISet<E> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    if (otherSet instanceof PersistentHashSet && otherSet.size() > size) {
+      return ((PersistentHashSet<E>) otherSet).union(this);
+    }
+    // start from this version so its nodes are shared by the result
+    Builder<E> builder = toBuilder();
+    for (E e : otherSet) {
+      builder.add(e);
+    }
+    return builder.build();
+  }
+
+  @Override
+  public ISet<E> intersection(ISet<E> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    Builder<E> builder = new Builder<>();
+    for (E e : this) {
+      if (otherSet.contains(e)) {
+        builder.add(e);
+      }
+    }
+    return builder.build();
+  }
+
+  @Override
+  public ISet<E> difference(ISet<E> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    Builder<E> builder = toBuilder();
+    if (otherSet.size() < size) {
+      for (E e : otherSet) {
+        builder.remove(e);
+      }
+    } else {
+      for (E e : this) {
+        if (otherSet.contains(e)) {
+          builder.remove(e);
+        }
+      }
+    }
+    return builder.build();
+  }
+
+  // Versions never change, so a clone is this set itself.
+  @Override
+  public Object clone() {
+    return this;
+  }
+
+  /**
+   * A mutable (transient) companion of PersistentHashSet for building or
+   * bulk editing a set. Nodes created by a Builder are changed in place
+   * until build() is called; nodes shared with a published set are always
+   * copied first. A Builder must not be shared between threads.
+   *
+   * @param <E> The data type of the elements of the set being built.
+   */
+  public static final class Builder<E> {
+    private Object edit = new Object();
+    private Node root;
+    private int size;
+    private long fingerprint;
+
+    /**
+     * create a Builder for an initially empty set
+     */
+    public Builder() {
+    }
+
+    private Builder(Node root, int size, long fingerprint) {
+      this.root = root;
+      this.size = size;
+      this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Add an item to the set being built.
+     * <br>
+     * pre: item != null
+     *
+     * @param item the item to add
+     * @return true if the set being built changed
+     */
+    public boolean add(E item) {
+      if (item == null) {
+        throw new IllegalArgumentException("Invalid item.");
+      }
+      boolean[] changed = { false };
+      root = PersistentHashSet.add(root, edit, item, changed);
+      if (changed[0]) {
+        size++;
+        fingerprint += ISet.fingerprintOf(item);
+      }
+      return changed[0];
+    }
+
+    /**
+     * Remove an item from the set being built.
+     * <br>
+     * pre: item != null
+     *
+     * @param item the item to remove
+     * @return true if the set being built changed
+     */
+    public boolean remove(E item) {
+      if (item == null) {
+        throw new IllegalArgumentException("Item is null");
+      }
+      boolean[] changed = { false };
+      root = PersistentHashSet.remove(root, edit, item, changed);
+      if (changed[0]) {
+        size--;
+        fingerprint -= ISet.fingerprintOf(item);
+      }
+      return changed[0];
+    }
+
+    /**
+     * Determine if item is in the set being built.
+     * <br>
+     * pre: item != null
+     *
+     * @param item the item to look for
+     * @return true if item is present
+     */
+    public boolean contains(E item) {
+      if (item == null) {
+        throw new IllegalArgumentException("Item is null");
+      }
+      return root != null && root.contains(item, hash(item), 0);
+    }
+
+    /**
+     * Return the number of elements in the set being built.
+     *
+     * @return the number of elements
+     */
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Publish the current contents as a PersistentHashSet. The Builder
+     * may still be used afterwards; it then copies any node it shares
+     * with the published set before changing it.
+     *
+     * @return a PersistentHashSet with the current contents
+     */
+    public PersistentHashSet<E> build() {
+      edit = new Object(); // nodes owned by the old token are now frozen
+      return new PersistentHashSet<>(root, size, fingerprint);
+    }
+  }
+
+  private static Node add(Node root, Object edit, Object item, boolean[] changed) {
+    int hash = hash(item);
+    if (root == null) {
+      changed[0] = true;
+      return new BitmapNode(edit, 1 << (hash & MASK), new Object[] { item });
+    }
+    return root.add(edit, item, hash, 0, changed);
+  }
+
+  private static Node remove(Node root, Object edit, Object item, boolean[] changed) {
+    if (root == null) {
+      return null;
+    }
+    Node result = root.remove(edit, item, hash(item), 0, changed);
+    if (result == null || result.arity() == 0) {
+      return null;
+    }
+    return result;
+  }
+
+  private static int hash(Object item) {
+    int h = item.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  /*
+   * Builds the smallest subtree holding a and b, two entries (elements, or
+   * a collision node) with different hashes, starting at shift.
+   */
+  private static Node merge(Object edit, Object a, int hashA, Object b, int hashB, int shift) {
+    if (hashA == hashB) {
+      return new CollisionNode(edit, hashA, new Object[] { a, b });
+    }
+    int fragA = (hashA >>> shift) & MASK;
+    int fragB = (hashB >>> shift) & MASK;
+    if (fragA == fragB) {
+      Node child = merge(edit, a, hashA, b, hashB, shift + BITS);
+      return new BitmapNode(edit, 1 << fragA, new Object[] { child });
+    }
+    Object[] array = fragA < fragB ? new Object[] { a, b } : new Object[] { b, a };
+    return new BitmapNode(edit, (1 << fragA) | (1 << fragB), array);
+  }
+
+  private abstract static class Node {
+    // the Builder token this node may be changed in place for, or null
+    final Object edit;
+
+    Node(Object edit) {
+      this.edit = edit;
+    }
+
+    boolean editable(Object edit) {
+      return edit != null && this.edit == edit;
+    }
+
+    abstract boolean contains(Object item, int hash, int shift);
+
+    // returns this node if nothing changed
+    abstract Node add(Object edit, Object item, int hash, int shift, boolean[] changed);
+
+    // returns this node if nothing changed
+    abstract Node remove(Object edit, Object item, int hash, int shift, boolean[] changed);
+
+    // number of entries (elements or children) in this node
+    abstract int arity();
+
+    abstract Object entry(int index);
+
+    // the only element of this node, or null if it holds anything else
+    Object single() {
+      if (arity() == 1 && !(entry(0) instanceof Node)) {
+        return entry(0);
+      }
+      return null;
+    }
+  }
+
+  private static final class BitmapNode extends Node {
+    private int bitmap;
+    private Object[] array;
+
+    BitmapNode(Object edit, int bitmap, Object[] array) {
+      super(edit);
+      this.bitmap = bitmap;
+      this.array = array;
+    }
+
+    private int index(int bit) {
+      return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    @Override
+    boolean contains(Object item, int hash, int shift) {
+      int bit = 1 << ((hash >>> shift) & MASK);
+      if ((bitmap & bit) == 0) {
+        return false;
+      }
+      Object entry = array[index(bit)];
+      if (entry instanceof Node) {
+        return ((Node) entry).contains(item, hash, shift + BITS);
+      }
+      return entry.equals(item);
+    }
+
+    @Override
+    Node add(Object edit, Object item, int hash, int shift, boolean[] changed) {
+      int bit = 1 << ((hash >>> shift) & MASK);
+      int index = index(bit);
+      if ((bitmap & bit) == 0) {
+        changed[0] = true;
+        Object[] grown = new Object[array.length + 1];
+        System.arraycopy(array, 0, grown, 0, index);
+        grown[index] = item;
+        System.arraycopy(array, index, grown, index + 1, array.length - index);
+        if (editable(edit)) {
+          array = grown;
+          bitmap |= bit;
+          return this;
+        }
+        return new BitmapNode(edit, bitmap | bit, grown);
+      }
+      Object entry = array[index];
+      Object replacement;
+      if (entry instanceof Node) {
+        replacement = ((Node) entry).add(edit, item, hash, shift + BITS, changed);
+      } else if (entry.equals(item)) {
+        return this;
+      } else {
+        changed[0] = true;
+        replacement = merge(edit, entry, hash(entry), item, hash, shift + BITS);
+      }
+      return replacement == entry ? this : set(edit, index, replacement);
+    }
+
+    @Override
+    Node remove(Object edit, Object item, int hash, int shift, boolean[] changed) {
+      int bit = 1 << ((hash >>> shift) & MASK);
+      if ((bitmap & bit) == 0) {
+        return this;
+      }
+      int index = index(bit);
+      Object entry = array[index];
+      if (entry instanceof Node) {
+        Node child = ((Node) entry).remove(edit, item, hash, shift + BITS, changed);
+        if (child == entry) {
+          return this;
+        }
+        if (child == null) {
+          return removeEntry(edit, index, bit);
+        }
+        // pull a lone element up so the trie stays as shallow as possible
+        Object single = child.single();
+        return set(edit, index, single != null ? single : child);
+      }
+      if (!entry.equals(item)) {
+        return this;
+      }
+      changed[0] = true;
+      return removeEntry(edit, index, bit);
+    }
+
+    private Node set(Object edit, int index, Object value) {
+      if (editable(edit)) {
+        array[index] = value;
+        return this;
+      }
+      Object[] copy = array.clone();
+      copy[index] = value;
+      return new BitmapNode(edit, bitmap, copy);
+    }
+
+    // returns null if the node becomes empty
+    private Node removeEntry(Object edit, int index, int bit) {
+      if (array.length == 1) {
+        return null;
+      }
+      Object[] shrunk = new Object[array.length - 1];
+      System.arraycopy(array, 0, shrunk, 0, index);
+      System.arraycopy(array, index + 1, shrunk, index, array.length - index - 1);
+      if (editable(edit)) {
+        array = shrunk;
+        bitmap ^= bit;
+        return this;
+      }
+      return new BitmapNode(edit, bitmap ^ bit, shrunk);
+    }
+
+    @Override
+    int arity() {
+      return array.length;
+    }
+
+    @Override
+    Object entry(int index) {
+      return array[index];
+    }
+  }
+
+  // holds two or more elements whose full hashes are equal
+  private static final class CollisionNode extends Node {
+    private final int hash;
+    private Object[] items;
+
+    CollisionNode(Object edit, int hash, Object[] items) {
+      super(edit);
+      this.hash = hash;
+      this.items = items;
+    }
+
+    private int indexOf(Object item) {
+      for (int i = 0; i < items.length; i++) {
+        if (items[i].equals(item)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    boolean contains(Object item, int hash, int shift) {
+      return hash == this.hash && indexOf(item) >= 0;
+    }
+
+    @Override
+    Node add(Object edit, Object item, int hash, int shift, boolean[] changed) {
+      if (hash != this.hash) {
+        // a different hash reached this slot: split below this level
+        changed[0] = true;
+        return merge(edit, this, this.hash, item, hash, shift);
+      }
+      if (indexOf(item) >= 0) {
+        return this;
+      }
+      changed[0] = true;
+      Object[] grown = Arrays.copyOf(items, items.length + 1);
+      grown[items.length] = item;
+      if (editable(edit)) {
+        items = grown;
+        return this;
+      }
+      return new CollisionNode(edit, hash, grown);
+    }
+
+    @Override
+    Node remove(Object edit, Object item, int hash, int shift, boolean[] changed) {
+      int index = hash == this.hash ? indexOf(item) : -1;
+      if (index < 0) {
+        return this;
+      }
+      changed[0] = true;
+      if (items.length == 1) {
+        return null;
+      }
+      Object[] shrunk = new Object[items.length - 1];
+      System.arraycopy(items, 0, shrunk, 0, index);
+      System.arraycopy(items, index + 1, shrunk, index, items.length - index - 1);
+      if (editable(edit)) {
+        items = shrunk;
+        return this;
+      }
+      return new CollisionNode(edit, hash, shrunk);
+    }
+
+    @Override
+    int arity() {
+      return items.length;
+    }
+
+    @Override
+    Object entry(int index) {
+      return items[index];
+    }
+  }
+
+  // depth first walk with an explicit stack; the trie is at most 8 deep
+  private static final class NodeIterator<E> implements Iterator<E> {
+    private final Node[] nodes = new Node[10];
+    private final int[] positions = new int[10];
+    private int depth = -1;
+    private Object next;
+
+    NodeIterator(Node root) {
+      if (root != null) {
+        depth = 0;
+        nodes[0] = root;
+        advance();
+      }
+    }
+
+    private void advance() {
+      next = null;
+      while (depth >= 0) {
+        Node node = nodes[depth];
+        if (positions[depth] == node.arity()) {
+          depth--;
+          continue;
+        }
+        Object entry = node.entry(positions[depth]++);
+        if (entry instanceof Node) {
+          depth++;
+          nodes[depth] = (Node) entry;
+          positions[depth] = 0;
+        } else {
+          next = entry;
+          return;
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E next() {
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+      Object result = next;
+      advance();
+      return (E) result;
+    }
+  }
+}
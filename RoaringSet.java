@@ -0,0 +1,896 @@
+/*
+ * A compressed bitmap implementation of ISet<Integer>, in the style of
+ * Roaring bitmaps.
+ *
+ * The 32 bit values are split into a 16 bit key (the high half) and a 16 bit
+ * low half. All values sharing a key are stored together in one container,
+ * which is either
+ *   - an array container: a sorted char[] of the low halves (sparse chunks),
+ *   - a bitmap container: 1024 longs, one bit per possible low half (dense
+ *     chunks), or
+ *   - a run container: sorted (start, length - 1) pairs (clustered chunks).
+ * The keys are stored with the sign bit flipped so that the containers, and
+ * therefore iteration, rank and select, follow signed int order.
+ */
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A set of Integers stored as a compressed bitmap.
+ * <br>
+ * Union, intersection and difference of two RoaringSets combine matching
+ * containers with word-wise OR, AND and AND NOT. Elements are returned by
+ * the iterator in ascending order.
+ */
+public class RoaringSet extends AbstractSet<Integer> {
+
+  // an array container holding more than this many values becomes a bitmap
+  private static final int ARRAY_MAX = 4096;
+  private static final int BITMAP_WORDS = 1024;
+
+  private char[] keys;
+  private Container[] containers;
+  private int count; // number of containers in use
+  private long cardinality;
+
+  /**
+   * create an empty RoaringSet
+   */
+  public RoaringSet() {
+    keys = new char[4];
+    containers = new Container[4];
+  }
+
+  /**
+   * create a RoaringSet holding the elements of other.
+   *
+   * @param other != null
+   */
+  public RoaringSet(ISet<Integer> other) {
+    this();
+    addAll(other);
+  }
+
+  @Override
+  public boolean add(Integer item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Invalid item.");
+    }
+    int value = item ^ Integer.MIN_VALUE;
+    char key = (char) (value >>> 16);
+    int index = Arrays.binarySearch(keys, 0, count, key);
+    if (index < 0) {
+      index = -(index + 1);
+      insertContainer(index, key, new ArrayContainer());
+    }
+    Container c = containers[index];
+    int before = c.cardinality();
+    c = c.add(value & 0xFFFF);
+    containers[index] = c;
+    if (c.cardinality() == before) {
+      return false;
+    }
+    cardinality++;
+    return true;
+  }
+
+  @Override
+  public boolean contains(Integer item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Item is null");
+    }
+    int value = item ^ Integer.MIN_VALUE;
+    int index = Arrays.binarySearch(keys, 0, count, (char) (value >>> 16));
+    return index >= 0 && containers[index].contains(value & 0xFFFF);
+  }
+
+  @Override
+  public boolean remove(Integer item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Item is null");
+    }
+    int value = item ^ Integer.MIN_VALUE;
+    int index = Arrays.binarySearch(keys, 0, count, (char) (value >>> 16));
+    if (index < 0) {
+      return false;
+    }
+    Container c = containers[index];
+    int before = c.cardinality();
+    c = c.remove(value & 0xFFFF);
+    if (c.cardinality() == before) {
+      return false;
+    }
+    cardinality--;
+    if (c.cardinality() == 0) {
+      removeContainer(index);
+    } else {
+      containers[index] = c;
+    }
+    return true;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(containers, 0, count, null);
+    count = 0;
+    cardinality = 0;
+  }
+
+  /**
+   * Return the number of elements of this set.
+   * pre: none
+   *
+   * @return the number of items in this set, or Integer.MAX_VALUE if there
+   *         are more than that. See cardinality().
+   */
+  @Override
+  public int size() {
+    return (int) Math.min(cardinality, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Return the exact number of elements of this set.
+   * pre: none
+   *
+   * @return the number of items in this set
+   */
+  public long cardinality() {
+    return cardinality;
+  }
+
+  /**
+   * Return the number of elements of this set that are less than or equal
+   * to value.
+   * pre: none
+   *
+   * @param value the cutoff value
+   * @return the number of elements <= value
+   */
+  public long rank(int value) {
+    value ^= Integer.MIN_VALUE;
+    char key = (char) (value >>> 16);
+    long result = 0;
+    for (int i = 0; i < count && keys[i] <= key; i++) {
+      if (keys[i] < key) {
+        result += containers[i].cardinality();
+      } else {
+        result += containers[i].rank(value & 0xFFFF);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Return the jth smallest element of this set. If j = 0 the smallest
+   * element is returned.
+   * <br>
+   * pre: 0 <= j < cardinality()
+   *
+   * @param j the rank of the element to get
+   * @return the jth smallest element of this set
+   */
+  public int select(long j) {
+    if (j < 0 || j >= cardinality) {
+      throw new IllegalArgumentException("Rank out of bounds");
+    }
+    int i = 0;
+    while (j >= containers[i].cardinality()) {
+      j -= containers[i].cardinality();
+      i++;
+    }
+    return combine(keys[i], containers[i].select((int) j));
+  }
+
+  /**
+   * Convert every container to whichever of the array, bitmap or run
+   * representations takes the least memory. Worth calling after a large
+   * batch of adds into clustered data.
+   * <br>
+   * pre: none
+   */
+  public void runOptimize() {
+    for (int i = 0; i < count; i++) {
+      containers[i] = containers[i].optimize();
+    }
+  }
+
+  @Override
+  public Iterator<Integer> iterator() {
+    return intIterator();
+  }
+
+  /**
+   * Return an iterator over the elements of this set, in ascending order,
+   * that does not box them.
+   * pre: none
+   *
+   * @return a primitive iterator over this set
+   */
+  public PrimitiveIterator.OfInt intIterator() {
+    PrimitiveIterator.OfInt itr = new PrimitiveIterator.OfInt() {
+      private int index; // container of the next element
+      private int low = count > 0 ? containers[0].nextValue(0) : -1;
+      private int last;
+      private boolean removeOK;
+
+      @Override
+      public boolean hasNext() {
+        return index < count;
+      }
+
+      @Override
+      public int nextInt() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        last = combine(keys[index], low);
+        low = containers[index].nextValue(low + 1);
+        while (low < 0 && ++index < count) {
+          low = containers[index].nextValue(0);
+        }
+        removeOK = true;
+        return last;
+      }
+
+      @Override
+      public void remove() {
+        if (!removeOK) {
+          throw new IllegalStateException();
+        }
+        RoaringSet.this.remove(last);
+        // the container may have been converted or dropped, find our place again
+        int value = last ^ Integer.MIN_VALUE;
+        int i = Arrays.binarySearch(keys, 0, count, (char) (value >>> 16));
+        low = -1;
+        if (i >= 0) {
+          index = i;
+          low = containers[i].nextValue((value & 0xFFFF) + 1);
+          if (low < 0) {
+            index++;
+          }
+        } else {
+          index = -(i + 1);
+        }
+        if (low < 0 && index < count) {
+          low = containers[index].nextValue(0); // containers are never empty
+        }
+        removeOK = false;
+      }
+    };
+    return itr;
+  }
+
+  @Override
+  public ISet<Integer> union(ISet<Integer> otherSet) {
+    RoaringSet other = roaring(otherSet);
+    RoaringSet result = new RoaringSet();
+    int i = 0;
+    int j = 0;
+    while (i < count || j < other.count) {
+      if (j == other.count || (i < count && keys[i] < other.keys[j])) {
+        result.append(keys[i], containers[i].copy());
+        i++;
+      } else if (i == count || other.keys[j] < keys[i]) {
+        result.append(other.keys[j], other.containers[j].copy());
+        j++;
+      } else {
+        result.append(keys[i], or(containers[i], other.containers[j]).optimize());
+        i++;
+        j++;
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public ISet<Integer> intersection(ISet<Integer> otherSet) {
+    RoaringSet other = roaring(otherSet);
+    RoaringSet result = new RoaringSet();
+    int i = 0;
+    int j = 0;
+    while (i < count && j < other.count) {
+      if (keys[i] < other.keys[j]) {
+        i++;
+      } else if (other.keys[j] < keys[i]) {
+        j++;
+      } else {
+        Container c = and(containers[i], other.containers[j]);
+        if (c.cardinality() > 0) {
+          result.append(keys[i], c.optimize());
+        }
+        i++;
+        j++;
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public ISet<Integer> difference(ISet<Integer> otherSet) {
+    RoaringSet other = roaring(otherSet);
+    RoaringSet result = new RoaringSet();
+    int j = 0;
+    for (int i = 0; i < count; i++) {
+      while (j < other.count && other.keys[j] < keys[i]) {
+        j++;
+      }
+      Container c;
+      if (j < other.count && other.keys[j] == keys[i]) {
+        c = andNot(containers[i], other.containers[j]).optimize();
+      } else {
+        c = containers[i].copy();
+      }
+      if (c.cardinality() > 0) {
+        result.append(keys[i], c);
+      }
+    }
+    return result;
+  }
+
+  // Views of this set iterate in ascending order, so chains merge instead of probing.
+  @Override
+  public SetView<Integer> view() {
+    return SetView.sorted(this, Comparator.naturalOrder());
+  }
+
+  @Override
+  public Object clone() {
+    Object result = new RoaringSet();
+    return result;
+  }
+
+  // returns otherSet as a RoaringSet, converting it if needed
+  private static RoaringSet roaring(ISet<Integer> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    return otherSet instanceof RoaringSet ? (RoaringSet) otherSet : new RoaringSet(otherSet);
+  }
+
+  private static int combine(char key, int low) {
+    return ((key << 16) | low) ^ Integer.MIN_VALUE;
+  }
+
+  // adds a container whose key is larger than all current keys
+  private void append(char key, Container c) {
+    insertContainer(count, key, c);
+    cardinality += c.cardinality();
+  }
+
+  private void insertContainer(int index, char key, Container c) {
+    if (count == keys.length) {
+      keys = Arrays.copyOf(keys, count * 2);
+      containers = Arrays.copyOf(containers, count * 2);
+    }
+    System.arraycopy(keys, index, keys, index + 1, count - index);
+    System.arraycopy(containers, index, containers, index + 1, count - index);
+    keys[index] = key;
+    containers[index] = c;
+    count++;
+  }
+
+  private void removeContainer(int index) {
+    System.arraycopy(keys, index + 1, keys, index, count - index - 1);
+    System.arraycopy(containers, index + 1, containers, index, count - index - 1);
+    count--;
+    containers[count] = null;
+  }
+
+  /*
+   * Container operations. The results are new containers; neither operand
+   * is changed.
+   */
+
+  private static Container or(Container a, Container b) {
+    if (a instanceof ArrayContainer && b instanceof ArrayContainer) {
+      ArrayContainer x = (ArrayContainer) a;
+      ArrayContainer y = (ArrayContainer) b;
+      if (x.cardinality + y.cardinality <= ARRAY_MAX) {
+        char[] merged = new char[x.cardinality + y.cardinality];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < x.cardinality && j < y.cardinality) {
+          char u = x.content[i];
+          char v = y.content[j];
+          if (u <= v) {
+            i++;
+          }
+          if (v <= u) {
+            j++;
+          }
+          merged[k++] = u <= v ? u : v;
+        }
+        while (i < x.cardinality) {
+          merged[k++] = x.content[i++];
+        }
+        while (j < y.cardinality) {
+          merged[k++] = y.content[j++];
+        }
+        return new ArrayContainer(merged, k);
+      }
+    }
+    long[] x = a.words();
+    long[] y = b.words();
+    long[] result = new long[BITMAP_WORDS];
+    int card = 0;
+    for (int i = 0; i < BITMAP_WORDS; i++) {
+      result[i] = x[i] | y[i];
+      card += Long.bitCount(result[i]);
+    }
+    return fromWords(result, card);
+  }
+
+  private static Container and(Container a, Container b) {
+    if (b instanceof ArrayContainer) {
+      Container t = a;
+      a = b;
+      b = t;
+    }
+    if (a instanceof ArrayContainer) {
+      // at most 4096 candidates, each tested against b's bits or runs
+      ArrayContainer x = (ArrayContainer) a;
+      char[] kept = new char[x.cardinality];
+      int k = 0;
+      for (int i = 0; i < x.cardinality; i++) {
+        if (b.contains(x.content[i])) {
+          kept[k++] = x.content[i];
+        }
+      }
+      return new ArrayContainer(kept, k);
+    }
+    long[] x = a.words();
+    long[] y = b.words();
+    long[] result = new long[BITMAP_WORDS];
+    int card = 0;
+    for (int i = 0; i < BITMAP_WORDS; i++) {
+      result[i] = x[i] & y[i];
+      card += Long.bitCount(result[i]);
+    }
+    return fromWords(result, card);
+  }
+
+  private static Container andNot(Container a, Container b) {
+    if (a instanceof ArrayContainer) {
+      ArrayContainer x = (ArrayContainer) a;
+      char[] kept = new char[x.cardinality];
+      int k = 0;
+      for (int i = 0; i < x.cardinality; i++) {
+        if (!b.contains(x.content[i])) {
+          kept[k++] = x.content[i];
+        }
+      }
+      return new ArrayContainer(kept, k);
+    }
+    long[] x = a.words();
+    long[] y = b.words();
+    long[] result = new long[BITMAP_WORDS];
+    int card = 0;
+    for (int i = 0; i < BITMAP_WORDS; i++) {
+      result[i] = x[i] & ~y[i];
+      card += Long.bitCount(result[i]);
+    }
+    return fromWords(result, card);
+  }
+
+  // wraps words in a bitmap container, or an array container if sparse
+  private static Container fromWords(long[] words, int card) {
+    if (card > ARRAY_MAX) {
+      return new BitmapContainer(words, card);
+    }
+    char[] content = new char[card];
+    int k = 0;
+    for (int i = 0; i < BITMAP_WORDS; i++) {
+      long w = words[i];
+      while (w != 0) {
+        content[k++] = (char) (i * 64 + Long.numberOfTrailingZeros(w));
+        w &= w - 1;
+      }
+    }
+    return new ArrayContainer(content, card);
+  }
+
+  // sets bits start through end inclusive
+  private static void setRange(long[] words, int start, int end) {
+    int first = start >>> 6;
+    int last = end >>> 6;
+    long firstMask = -1L << start;
+    long lastMask = -1L >>> (63 - (end & 63));
+    if (first == last) {
+      words[first] |= firstMask & lastMask;
+    } else {
+      words[first] |= firstMask;
+      for (int i = first + 1; i < last; i++) {
+        words[i] = -1L;
+      }
+      words[last] |= lastMask;
+    }
+  }
+
+  /*
+   * Holds the low halves of the values that share one key.
+   * add and remove may return a different container when the
+   * representation has to change; callers must store the result.
+   */
+  private abstract static class Container {
+
+    abstract int cardinality();
+
+    abstract boolean contains(int low);
+
+    abstract Container add(int low);
+
+    abstract Container remove(int low);
+
+    // number of elements <= low
+    abstract int rank(int low);
+
+    // the jth smallest element
+    abstract int select(int j);
+
+    // smallest element >= from, or -1 if there is none
+    abstract int nextValue(int from);
+
+    abstract int numberOfRuns();
+
+    // the contents as 1024 bitmap words, callers must not modify the result
+    abstract long[] words();
+
+    abstract Container copy();
+
+    // converts to the smallest of the three representations
+    Container optimize() {
+      int card = cardinality();
+      int runBytes = 2 + 4 * numberOfRuns();
+      int otherBytes = card <= ARRAY_MAX ? 2 * card : 8 * BITMAP_WORDS;
+      if (runBytes < otherBytes) {
+        return this instanceof RunContainer ? this : RunContainer.of(this);
+      }
+      if (card <= ARRAY_MAX) {
+        return this instanceof ArrayContainer ? this : fromWords(words(), card);
+      }
+      return this instanceof BitmapContainer ? this : new BitmapContainer(words(), card);
+    }
+  }
+
+  private static class ArrayContainer extends Container {
+    private char[] content;
+    private int cardinality;
+
+    ArrayContainer() {
+      content = new char[4];
+    }
+
+    ArrayContainer(char[] content, int cardinality) {
+      this.content = content;
+      this.cardinality = cardinality;
+    }
+
+    @Override
+    int cardinality() {
+      return cardinality;
+    }
+
+    @Override
+    boolean contains(int low) {
+      return Arrays.binarySearch(content, 0, cardinality, (char) low) >= 0;
+    }
+
+    @Override
+    Container add(int low) {
+      int index = Arrays.binarySearch(content, 0, cardinality, (char) low);
+      if (index >= 0) {
+        return this;
+      }
+      if (cardinality == ARRAY_MAX) {
+        BitmapContainer bitmap = new BitmapContainer(words(), cardinality);
+        return bitmap.add(low);
+      }
+      index = -(index + 1);
+      if (cardinality == content.length) {
+        content = Arrays.copyOf(content, Math.min(ARRAY_MAX, cardinality * 2));
+      }
+      System.arraycopy(content, index, content, index + 1, cardinality - index);
+      content[index] = (char) low;
+      cardinality++;
+      return this;
+    }
+
+    @Override
+    Container remove(int low) {
+      int index = Arrays.binarySearch(content, 0, cardinality, (char) low);
+      if (index >= 0) {
+        System.arraycopy(content, index + 1, content, index, cardinality - index - 1);
+        cardinality--;
+      }
+      return this;
+    }
+
+    @Override
+    int rank(int low) {
+      int index = Arrays.binarySearch(content, 0, cardinality, (char) low);
+      return index >= 0 ? index + 1 : -(index + 1);
+    }
+
+    @Override
+    int select(int j) {
+      return content[j];
+    }
+
+    @Override
+    int nextValue(int from) {
+      if (from > 0xFFFF) {
+        return -1;
+      }
+      int index = Arrays.binarySearch(content, 0, cardinality, (char) from);
+      if (index < 0) {
+        index = -(index + 1);
+      }
+      return index < cardinality ? content[index] : -1;
+    }
+
+    @Override
+    int numberOfRuns() {
+      int runs = 0;
+      for (int i = 0; i < cardinality; i++) {
+        if (i == 0 || content[i] != content[i - 1] + 1) {
+          runs++;
+        }
+      }
+      return runs;
+    }
+
+    @Override
+    long[] words() {
+      long[] words = new long[BITMAP_WORDS];
+      for (int i = 0; i < cardinality; i++) {
+        words[content[i] >>> 6] |= 1L << content[i];
+      }
+      return words;
+    }
+
+    @Override
+    Container copy() {
+      return new ArrayContainer(Arrays.copyOf(content, Math.max(cardinality, 1)), cardinality);
+    }
+  }
+
+  private static class BitmapContainer extends Container {
+    private final long[] words;
+    private int cardinality;
+
+    BitmapContainer(long[] words, int cardinality) {
+      this.words = words;
+      this.cardinality = cardinality;
+    }
+
+    @Override
+    int cardinality() {
+      return cardinality;
+    }
+
+    @Override
+    boolean contains(int low) {
+      return (words[low >>> 6] & (1L << low)) != 0;
+    }
+
+    @Override
+    Container add(int low) {
+      long before = words[low >>> 6];
+      words[low >>> 6] = before | (1L << low);
+      if (words[low >>> 6] != before) {
+        cardinality++;
+      }
+      return this;
+    }
+
+    @Override
+    Container remove(int low) {
+      long before = words[low >>> 6];
+      words[low >>> 6] = before & ~(1L << low);
+      if (words[low >>> 6] != before) {
+        cardinality--;
+        if (cardinality <= ARRAY_MAX) {
+          return fromWords(words, cardinality);
+        }
+      }
+      return this;
+    }
+
+    @Override
+    int rank(int low) {
+      int result = 0;
+      int w = low >>> 6;
+      for (int i = 0; i < w; i++) {
+        result += Long.bitCount(words[i]);
+      }
+      return result + Long.bitCount(words[w] << (63 - (low & 63)));
+    }
+
+    @Override
+    int select(int j) {
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        int bits = Long.bitCount(words[i]);
+        if (j < bits) {
+          long w = words[i];
+          for (; j > 0; j--) {
+            w &= w - 1;
+          }
+          return i * 64 + Long.numberOfTrailingZeros(w);
+        }
+        j -= bits;
+      }
+      throw new IllegalStateException();
+    }
+
+    @Override
+    int nextValue(int from) {
+      if (from > 0xFFFF) {
+        return -1;
+      }
+      int i = from >>> 6;
+      long w = words[i] & (-1L << from);
+      while (w == 0) {
+        if (++i == BITMAP_WORDS) {
+          return -1;
+        }
+        w = words[i];
+      }
+      return i * 64 + Long.numberOfTrailingZeros(w);
+    }
+
+    @Override
+    int numberOfRuns() {
+      // count the set bits whose lower neighbour is clear
+      int runs = 0;
+      long carry = 0;
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        long w = words[i];
+        runs += Long.bitCount(w & ~((w << 1) | carry));
+        carry = w >>> 63;
+      }
+      return runs;
+    }
+
+    @Override
+    long[] words() {
+      return words;
+    }
+
+    @Override
+    Container copy() {
+      return new BitmapContainer(words.clone(), cardinality);
+    }
+  }
+
+  /*
+   * Stores runs of consecutive values as (start, length - 1) pairs.
+   * Run containers are built by optimize(); they switch back to an array or
+   * bitmap container on the first add or remove.
+   */
+  private static class RunContainer extends Container {
+    private final char[] runs;
+    private final int numRuns;
+    private final int cardinality;
+
+    private RunContainer(char[] runs, int numRuns, int cardinality) {
+      this.runs = runs;
+      this.numRuns = numRuns;
+      this.cardinality = cardinality;
+    }
+
+    static RunContainer of(Container c) {
+      char[] runs = new char[2 * c.numberOfRuns()];
+      int k = 0;
+      int start = c.nextValue(0);
+      while (start >= 0) {
+        int end = start;
+        int next = c.nextValue(end + 1);
+        while (next == end + 1) {
+          end = next;
+          next = c.nextValue(end + 1);
+        }
+        runs[k++] = (char) start;
+        runs[k++] = (char) (end - start);
+        start = next;
+      }
+      return new RunContainer(runs, k / 2, c.cardinality());
+    }
+
+    @Override
+    int cardinality() {
+      return cardinality;
+    }
+
+    // index of the last run starting at or before low, or -1
+    private int runFor(int low) {
+      int lo = 0;
+      int hi = numRuns - 1;
+      while (lo <= hi) {
+        int mid = (lo + hi) >>> 1;
+        if (runs[2 * mid] <= low) {
+          lo = mid + 1;
+        } else {
+          hi = mid - 1;
+        }
+      }
+      return hi;
+    }
+
+    @Override
+    boolean contains(int low) {
+      int r = runFor(low);
+      return r >= 0 && low <= runs[2 * r] + runs[2 * r + 1];
+    }
+
+    private Container materialize() {
+      return fromWords(words(), cardinality);
+    }
+
+    @Override
+    Container add(int low) {
+      return contains(low) ? this : materialize().add(low);
+    }
+
+    @Override
+    Container remove(int low) {
+      return contains(low) ? materialize().remove(low) : this;
+    }
+
+    @Override
+    int rank(int low) {
+      int result = 0;
+      for (int r = 0; r < numRuns && runs[2 * r] <= low; r++) {
+        result += Math.min(runs[2 * r + 1], low - runs[2 * r]) + 1;
+      }
+      return result;
+    }
+
+    @Override
+    int select(int j) {
+      for (int r = 0; r < numRuns; r++) {
+        int length = runs[2 * r + 1] + 1;
+        if (j < length) {
+          return runs[2 * r] + j;
+        }
+        j -= length;
+      }
+      throw new IllegalStateException();
+    }
+
+    @Override
+    int nextValue(int from) {
+      if (from > 0xFFFF) {
+        return -1;
+      }
+      int r = runFor(from);
+      if (r >= 0 && from <= runs[2 * r] + runs[2 * r + 1]) {
+        return from;
+      }
+      return r + 1 < numRuns ? runs[2 * (r + 1)] : -1;
+    }
+
+    @Override
+    int numberOfRuns() {
+      return numRuns;
+    }
+
+    @Override
+    long[] words() {
+      long[] words = new long[BITMAP_WORDS];
+      for (int r = 0; r < numRuns; r++) {
+        setRange(words, runs[2 * r], runs[2 * r] + runs[2 * r + 1]);
+      }
+      return words;
+    }
+
+    @Override
+    Container copy() {
+      return this; // run containers are never modified in place
+    }
+  }
+}
@@ -0,0 +1,547 @@
+/*
+ * Lazy, read-only set expressions.
+ *
+ * A SetView is a tree of union, intersection and difference nodes over
+ * ISets. Nothing is computed when the tree is built: contains() asks the
+ * operands, and iterator() streams the elements straight out of the
+ * operands' iterators. A chain such as
+ *
+ *   a.view().union(b).intersection(c).difference(d)
+ *
+ * therefore allocates no intermediate sets. Only toSet() and into() copy
+ * the elements into a real set.
+ *
+ * A view knows whether its iterator returns the elements in the order of
+ * some Comparator. When both operands of a node are ordered by the same
+ * Comparator, the node is iterated with a single merge pass over the two
+ * operand iterators and needs no lookups at all. Otherwise one operand is
+ * iterated and the other is probed with contains().
+ */
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A lazily evaluated set expression. Views are read only and reflect the
+ * current contents of the sets they were built from; those sets must not
+ * be changed while a view of them is being iterated.
+ *
+ * @param <E> The data type of the elements of this view.
+ */
+public abstract class SetView<E> implements Iterable<E> {
+
+  /*
+   * Sole constructor. (For invocation by subclass constructors,
+   * typically implicit.)
+   */
+  protected SetView() {
+  }
+
+  /**
+   * Return a view of set with no known iteration order.
+   *
+   * @param set != null
+   * @return a view of the elements of set
+   */
+  public static <E> SetView<E> of(ISet<E> set) {
+    if (set == null) {
+      throw new IllegalArgumentException("Set is null");
+    }
+    return new Leaf<>(set, null);
+  }
+
+  /**
+   * Return a view of set whose iterator returns the elements in ascending
+   * order of comparator. The set's own iterator must already do so.
+   *
+   * @param set        != null
+   * @param comparator != null, the order set iterates in
+   * @return a sorted view of the elements of set
+   */
+  public static <E> SetView<E> sorted(ISet<E> set, Comparator<? super E> comparator) {
+    if (set == null) {
+      throw new IllegalArgumentException("Set is null");
+    }
+    if (comparator == null) {
+      throw new IllegalArgumentException("Comparator is null");
+    }
+    return new Leaf<>(set, comparator);
+  }
+
+  /**
+   * Determine if item is in this view.
+   * <br>
+   * pre: item != null
+   *
+   * @param item != null
+   * @return true if item is in this view, false otherwise
+   */
+  public abstract boolean contains(E item);
+
+  /**
+   * Return an Iterator over the elements of this view. The Iterator does
+   * not support remove.
+   *
+   * @return an Iterator over the elements of this view
+   */
+  @Override
+  public abstract Iterator<E> iterator();
+
+  /**
+   * Return the order this view iterates in.
+   *
+   * @return the Comparator the elements are returned in ascending order
+   *         of, or null if the order is unknown
+   */
+  public abstract Comparator<? super E> comparator();
+
+  /**
+   * Return an upper bound on the number of elements in this view. O(1)
+   * per node of the expression.
+   *
+   * @return a number >= size()
+   */
+  public abstract int sizeBound();
+
+  /**
+   * Return the number of elements in this view. O(n), the view is
+   * iterated.
+   *
+   * @return the number of elements in this view
+   */
+  public int size() {
+    int result = 0;
+    for (Iterator<E> it = iterator(); it.hasNext(); it.next()) {
+      result++;
+    }
+    return result;
+  }
+
+  /**
+   * Determine if this view has no elements. Stops at the first element.
+   *
+   * @return true if this view is empty
+   */
+  public boolean isEmpty() {
+    return !iterator().hasNext();
+  }
+
+  /**
+   * Return a view of the union of this view and otherSet.
+   *
+   * @param otherSet != null
+   * @return a lazy union
+   */
+  public SetView<E> union(ISet<E> otherSet) {
+    return union(viewOf(otherSet));
+  }
+
+  /**
+   * Return a view of the union of this view and other.
+   *
+   * @param other != null
+   * @return a lazy union
+   */
+  public SetView<E> union(SetView<E> other) {
+    return new Union<>(this, check(other));
+  }
+
+  /**
+   * Return a view of the intersection of this view and otherSet.
+   *
+   * @param otherSet != null
+   * @return a lazy intersection
+   */
+  public SetView<E> intersection(ISet<E> otherSet) {
+    return intersection(viewOf(otherSet));
+  }
+
+  /**
+   * Return a view of the intersection of this view and other.
+   *
+   * @param other != null
+   * @return a lazy intersection
+   */
+  public SetView<E> intersection(SetView<E> other) {
+    return new Intersection<>(this, check(other));
+  }
+
+  /**
+   * Return a view of the elements of this view that are not in otherSet.
+   *
+   * @param otherSet != null
+   * @return a lazy difference
+   */
+  public SetView<E> difference(ISet<E> otherSet) {
+    return difference(viewOf(otherSet));
+  }
+
+  /**
+   * Return a view of the elements of this view that are not in other.
+   *
+   * @param other != null
+   * @return a lazy difference
+   */
+  public SetView<E> difference(SetView<E> other) {
+    return new Difference<>(this, check(other));
+  }
+
+  /**
+   * Copy the elements of this view into a new set.
+   *
+   * @return a HashSet of the elements of this view
+   */
+  public ISet<E> toSet() {
+    return into(new HashSet<>(sizeBound()));
+  }
+
+  /**
+   * Add the elements of this view to target.
+   * <br>
+   * pre: target != null
+   *
+   * @param target the set to fill, for example an empty SortedSet
+   * @return target
+   */
+  public <S extends ISet<E>> S into(S target) {
+    if (target == null) {
+      throw new IllegalArgumentException("Set is null");
+    }
+    for (E e : this) {
+      target.add(e);
+    }
+    return target;
+  }
+
+  /**
+   * Return a String version of this view.
+   * Format is (e1, e2, ... en)
+   *
+   * @return A String version of this view.
+   */
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder("(");
+    String separator = "";
+    for (E e : this) {
+      result.append(separator).append(e);
+      separator = ", ";
+    }
+    return result.append(")").toString();
+  }
+
+  private static <E> SetView<E> viewOf(ISet<E> set) {
+    if (set == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    return set.view();
+  }
+
+  private static <E> SetView<E> check(SetView<E> view) {
+    if (view == null) {
+      throw new IllegalArgumentException("other view is invalid");
+    }
+    return view;
+  }
+
+  // the shared order of two views, or null if they cannot be merged
+  private static <E> Comparator<? super E> commonOrder(SetView<E> a, SetView<E> b) {
+    Comparator<? super E> order = a.comparator();
+    return order != null && Objects.equals(order, b.comparator()) ? order : null;
+  }
+
+  private static final class Leaf<E> extends SetView<E> {
+    private final ISet<E> set;
+    private final Comparator<? super E> order;
+
+    Leaf(ISet<E> set, Comparator<? super E> order) {
+      this.set = set;
+      this.order = order;
+    }
+
+    @Override
+    public boolean contains(E item) {
+      return set.contains(item);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+      Iterator<E> inner = set.iterator();
+      return new Iterator<E>() {
+        @Override
+        public boolean hasNext() {
+          return inner.hasNext();
+        }
+
+        @Override
+        public E next() {
+          return inner.next();
+        }
+      };
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+      return order;
+    }
+
+    @Override
+    public int sizeBound() {
+      return set.size();
+    }
+
+    @Override
+    public int size() {
+      return set.size();
+    }
+  }
+
+  private static final class Union<E> extends SetView<E> {
+    private final SetView<E> left;
+    private final SetView<E> right;
+    private final Comparator<? super E> order;
+
+    Union(SetView<E> left, SetView<E> right) {
+      this.left = left;
+      this.right = right;
+      order = commonOrder(left, right);
+    }
+
+    @Override
+    public boolean contains(E item) {
+      return left.contains(item) || right.contains(item);
+    }
+
+    // all of left, then the elements of right that left does not have
+    @Override
+    public Iterator<E> iterator() {
+      if (order != null) {
+        return new Merge<>(left.iterator(), right.iterator(), order, true, true, true);
+      }
+      Iterator<E> first = left.iterator();
+      Iterator<E> second = new Filter<>(right.iterator(), left, false);
+      return new Iterator<E>() {
+        @Override
+        public boolean hasNext() {
+          return first.hasNext() || second.hasNext();
+        }
+
+        @Override
+        public E next() {
+          return first.hasNext() ? first.next() : second.next();
+        }
+      };
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+      return order;
+    }
+
+    @Override
+    public int sizeBound() {
+      long bound = (long) left.sizeBound() + right.sizeBound();
+      return (int) Math.min(Integer.MAX_VALUE, bound);
+    }
+  }
+
+  private static final class Intersection<E> extends SetView<E> {
+    private final SetView<E> left;
+    private final SetView<E> right;
+    private final Comparator<? super E> order;
+
+    Intersection(SetView<E> left, SetView<E> right) {
+      this.left = left;
+      this.right = right;
+      order = commonOrder(left, right);
+    }
+
+    @Override
+    public boolean contains(E item) {
+      return left.contains(item) && right.contains(item);
+    }
+
+    // the side with the smaller bound is iterated and the other probed
+    @Override
+    public Iterator<E> iterator() {
+      if (order != null) {
+        return new Merge<>(left.iterator(), right.iterator(), order, false, true, false);
+      }
+      if (left.sizeBound() <= right.sizeBound()) {
+        return new Filter<>(left.iterator(), right, true);
+      }
+      return new Filter<>(right.iterator(), left, true);
+    }
+
+    // filtering keeps the order of the iterated side
+    @Override
+    public Comparator<? super E> comparator() {
+      if (order != null) {
+        return order;
+      }
+      return left.sizeBound() <= right.sizeBound() ? left.comparator() : right.comparator();
+    }
+
+    @Override
+    public int sizeBound() {
+      return Math.min(left.sizeBound(), right.sizeBound());
+    }
+  }
+
+  private static final class Difference<E> extends SetView<E> {
+    private final SetView<E> left;
+    private final SetView<E> right;
+    private final Comparator<? super E> order;
+
+    Difference(SetView<E> left, SetView<E> right) {
+      this.left = left;
+      this.right = right;
+      order = commonOrder(left, right);
+    }
+
+    @Override
+    public boolean contains(E item) {
+      return left.contains(item) && !right.contains(item);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+      if (order != null) {
+        return new Merge<>(left.iterator(), right.iterator(), order, true, false, false);
+      }
+      return new Filter<>(left.iterator(), right, false);
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+      return left.comparator();
+    }
+
+    @Override
+    public int sizeBound() {
+      return left.sizeBound();
+    }
+  }
+
+  /*
+   * Returns the elements of source that other does (keep) or does not
+   * (!keep) contain.
+   */
+  private static final class Filter<E> implements Iterator<E> {
+    private final Iterator<E> source;
+    private final SetView<E> other;
+    private final boolean keep;
+    private E next;
+
+    Filter(Iterator<E> source, SetView<E> other, boolean keep) {
+      this.source = source;
+      this.other = other;
+      this.keep = keep;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (next == null && source.hasNext()) {
+        E e = source.next();
+        if (other.contains(e) == keep) {
+          next = e;
+        }
+      }
+      return next != null;
+    }
+
+    @Override
+    public E next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      E result = next;
+      next = null;
+      return result;
+    }
+  }
+
+  /*
+   * One merge pass over two iterators sorted by the same Comparator. The
+   * three flags say whether an element found only on the left, on both
+   * sides, or only on the right is returned.
+   */
+  private static final class Merge<E> implements Iterator<E> {
+    private final Iterator<E> left;
+    private final Iterator<E> right;
+    private final Comparator<? super E> order;
+    private final boolean leftOnly;
+    private final boolean both;
+    private final boolean rightOnly;
+    private E a;
+    private E b;
+    private E next;
+
+    Merge(Iterator<E> left, Iterator<E> right, Comparator<? super E> order,
+        boolean leftOnly, boolean both, boolean rightOnly) {
+      this.left = left;
+      this.right = right;
+      this.order = order;
+      this.leftOnly = leftOnly;
+      this.both = both;
+      this.rightOnly = rightOnly;
+      a = left.hasNext() ? left.next() : null;
+      b = right.hasNext() ? right.next() : null;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (next == null && (a != null || b != null)) {
+        if (a == null) {
+          if (!rightOnly) {
+            b = null;
+            break;
+          }
+          next = b;
+          b = right.hasNext() ? right.next() : null;
+          continue;
+        }
+        if (b == null) {
+          if (!leftOnly) {
+            a = null;
+            break;
+          }
+          next = a;
+          a = left.hasNext() ? left.next() : null;
+          continue;
+        }
+        int c = order.compare(a, b);
+        if (c < 0) {
+          if (leftOnly) {
+            next = a;
+          }
+          a = left.hasNext() ? left.next() : null;
+        } else if (c > 0) {
+          if (rightOnly) {
+            next = b;
+          }
+          b = right.hasNext() ? right.next() : null;
+        } else {
+          if (both) {
+            next = a;
+          }
+          a = left.hasNext() ? left.next() : null;
+          b = right.hasNext() ? right.next() : null;
+        }
+      }
+      return next != null;
+    }
+
+    @Override
+    public E next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      E result = next;
+      next = null;
+      return result;
+    }
+  }
+}
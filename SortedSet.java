@@ -6,8 +6,14 @@
  */
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Predicate;
 
 /**
  * In this implementation of the ISet interface the elements in the Set are
@@ -23,8 +29,16 @@ import java.util.NoSuchElementException;
  */
 public class SortedSet<E extends Comparable<? super E>> extends AbstractSet<E> {
 
+  /*
+   * When one operand of a set operation is at least this many times larger
+   * than the other, the smaller one is walked and the larger one is
+   * searched with galloping (exponential) search instead of merged.
+   */
+  private static final int GALLOP_RATIO = 32;
+
   private ArrayList<E> mySortedSet;
   private int size;
+  private long fingerprint; // sum of ISet.fingerprintOf over the elements
 
   /**
    * create an empty SortedSet
@@ -33,16 +47,19 @@ public class SortedSet<E extends Comparable<? super E>> extends AbstractSet<E> {
     mySortedSet = new ArrayList<>();
   }
 
+  // create an empty SortedSet whose backing list can hold capacity elements
+  private SortedSet(int capacity) {
+    mySortedSet = new ArrayList<>(capacity);
+  }
+
   /**
    * create a SortedSet out of an unsorted set. <br>
    * 
    * @param other != null
    */
   public SortedSet(ISet<E> other) {
-    mySortedSet = new ArrayList<>();
-    for (E e : other) {
-      this.add(e);
-    }
+    mySortedSet = new ArrayList<>(other.size());
+    addAll(other);
   }
 
   /**
@@ -70,47 +87,321 @@ public class SortedSet<E extends Comparable<? super E>> extends AbstractSet<E> {
     return mySortedSet.get(size - 1);
   }
 
+  /**
+   * Return the largest element of this set less than or equal to item.
+   * O(log n).
+   * <br>
+   * pre: item != null
+   *
+   * @param item the bound
+   * @return the greatest element <= item, or null if there is none
+   */
+  public E floor(E item) {
+    int index = upperBound(check(item)) - 1;
+    return index >= 0 ? mySortedSet.get(index) : null;
+  }
+
+  /**
+   * Return the smallest element of this set greater than or equal to item.
+   * O(log n).
+   * <br>
+   * pre: item != null
+   *
+   * @param item the bound
+   * @return the least element >= item, or null if there is none
+   */
+  public E ceiling(E item) {
+    int index = lowerBound(check(item));
+    return index < size ? mySortedSet.get(index) : null;
+  }
+
+  /**
+   * Return the largest element of this set strictly less than item.
+   * O(log n).
+   * <br>
+   * pre: item != null
+   *
+   * @param item the bound
+   * @return the greatest element < item, or null if there is none
+   */
+  public E lower(E item) {
+    int index = lowerBound(check(item)) - 1;
+    return index >= 0 ? mySortedSet.get(index) : null;
+  }
+
+  /**
+   * Return the smallest element of this set strictly greater than item.
+   * O(log n).
+   * <br>
+   * pre: item != null
+   *
+   * @param item the bound
+   * @return the least element > item, or null if there is none
+   */
+  public E higher(E item) {
+    int index = upperBound(check(item));
+    return index < size ? mySortedSet.get(index) : null;
+  }
+
+  /**
+   * Return the number of elements of this set less than item. If item is
+   * present this is its position in ascending order, starting at 0.
+   * O(log n).
+   * <br>
+   * pre: item != null
+   *
+   * @param item the element to rank
+   * @return the number of elements < item
+   */
+  public int rank(E item) {
+    return lowerBound(check(item));
+  }
+
+  /**
+   * Return a view of the elements of this set from fromItem to toItem.
+   * The view is live: it is backed by this set, so changes to either show
+   * in the other. Its bounds are found by binary search on each call, so
+   * size(), min() and max() are O(log n) and iterating it copies nothing.
+   * Adding an item outside the bounds through the view throws
+   * IllegalArgumentException.
+   * <br>
+   * pre: fromItem != null, toItem != null, fromItem <= toItem
+   *
+   * @param fromItem      the low end of the range
+   * @param fromInclusive true if fromItem itself is in range
+   * @param toItem        the high end of the range
+   * @param toInclusive   true if toItem itself is in range
+   * @return a view of the elements in the range
+   */
+  public SortedSet<E>.SubSet subSet(E fromItem, boolean fromInclusive, E toItem, boolean toInclusive) {
+    if (check(fromItem).compareTo(check(toItem)) > 0) {
+      throw new IllegalArgumentException("fromItem > toItem");
+    }
+    return new SubSet(fromItem, fromInclusive, toItem, toInclusive);
+  }
+
+  /**
+   * Return a view of the elements from fromItem inclusive to toItem
+   * exclusive. See subSet(E, boolean, E, boolean).
+   * <br>
+   * pre: fromItem != null, toItem != null, fromItem <= toItem
+   *
+   * @param fromItem the low end of the range, inclusive
+   * @param toItem   the high end of the range, exclusive
+   * @return a view of the elements in the range
+   */
+  public SortedSet<E>.SubSet subSet(E fromItem, E toItem) {
+    return subSet(fromItem, true, toItem, false);
+  }
+
+  /**
+   * Return a view of the elements less than toItem (or equal to it, if
+   * inclusive). See subSet(E, boolean, E, boolean).
+   * <br>
+   * pre: toItem != null
+   *
+   * @param toItem    the high end of the range
+   * @param inclusive true if toItem itself is in range
+   * @return a view of the elements in the range
+   */
+  public SortedSet<E>.SubSet headSet(E toItem, boolean inclusive) {
+    return new SubSet(null, false, check(toItem), inclusive);
+  }
+
+  /**
+   * Return a view of the elements less than toItem.
+   * See subSet(E, boolean, E, boolean).
+   * <br>
+   * pre: toItem != null
+   *
+   * @param toItem the high end of the range, exclusive
+   * @return a view of the elements in the range
+   */
+  public SortedSet<E>.SubSet headSet(E toItem) {
+    return headSet(toItem, false);
+  }
+
+  /**
+   * Return a view of the elements greater than fromItem (or equal to it,
+   * if inclusive). See subSet(E, boolean, E, boolean).
+   * <br>
+   * pre: fromItem != null
+   *
+   * @param fromItem  the low end of the range
+   * @param inclusive true if fromItem itself is in range
+   * @return a view of the elements in the range
+   */
+  public SortedSet<E>.SubSet tailSet(E fromItem, boolean inclusive) {
+    return new SubSet(check(fromItem), inclusive, null, false);
+  }
+
+  /**
+   * Return a view of the elements greater than or equal to fromItem.
+   * See subSet(E, boolean, E, boolean).
+   * <br>
+   * pre: fromItem != null
+   *
+   * @param fromItem the low end of the range, inclusive
+   * @return a view of the elements in the range
+   */
+  public SortedSet<E>.SubSet tailSet(E fromItem) {
+    return tailSet(fromItem, true);
+  }
+
   @Override
   public boolean add(E item) {
     if (item == null) {
       throw new IllegalArgumentException("Invalid item.");
     }
-    if (size >= 1) {
-      int index = 0;
-      while (index < size) {
-        if (mySortedSet.get(index).equals(item)) {
-          return false;
-        }
-        if (item.compareTo(mySortedSet.get(index)) < 0) {
-          mySortedSet.add(index, item);
-          size++;
-          return true;
-        }
-        if (index == size - 1) {
-          mySortedSet.add(item);
-          size++;
-          return true;
+    int index = Collections.binarySearch(mySortedSet, item);
+    if (index >= 0) {
+      return false; // already present
+    }
+    mySortedSet.add(-(index + 1), item);
+    size++;
+    fingerprint += ISet.fingerprintOf(item);
+    return true;
+  }
+
+  /*
+   * Bulk version of add. Rather than shifting the backing array once per
+   * element, the new elements are appended, the whole list is sorted once
+   * and the duplicates are squeezed out in a single pass.
+   */
+  @Override
+  public boolean addAll(ISet<E> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("Set is null");
+    }
+    int oldSize = size;
+    mySortedSet.ensureCapacity(size + otherSet.size());
+    try {
+      for (E e : otherSet) {
+        if (e == null) {
+          throw new IllegalArgumentException("Invalid item.");
         }
-        index++;
+        mySortedSet.add(e);
+      }
+    } catch (RuntimeException e) {
+      // drop what was appended so the list is sorted again
+      mySortedSet.subList(oldSize, mySortedSet.size()).clear();
+      throw e;
+    }
+    if (mySortedSet.size() == oldSize) {
+      return false;
+    }
+    Collections.sort(mySortedSet);
+    // compact, keeping the first of each run of equal elements
+    int kept = 1;
+    long sum = ISet.fingerprintOf(mySortedSet.get(0));
+    for (int i = 1; i < mySortedSet.size(); i++) {
+      E e = mySortedSet.get(i);
+      if (e.compareTo(mySortedSet.get(kept - 1)) != 0) {
+        mySortedSet.set(kept, e);
+        kept++;
+        sum += ISet.fingerprintOf(e);
       }
-    } else { // 1st item
-      mySortedSet.add(item);
-      size++;
+    }
+    mySortedSet.subList(kept, mySortedSet.size()).clear();
+    size = kept;
+    fingerprint = sum;
+    return size != oldSize;
+  }
+
+  @Override
+  public boolean contains(E item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Item is null");
+    }
+    return Collections.binarySearch(mySortedSet, item) >= 0;
+  }
+
+  @Override
+  public boolean containsAll(ISet<E> otherSet) {
+    SortedSet<E> other = sorted(otherSet);
+    if (other == null) {
+      return super.containsAll(otherSet);
+    }
+    if (other.size > size) {
+      return false;
+    }
+    ArrayList<E> small = other.mySortedSet;
+    boolean gallop = size / GALLOP_RATIO >= other.size;
+    int j = 0;
+    for (E e : small) {
+      j = gallop ? gallop(mySortedSet, e, j) : advance(mySortedSet, e, j);
+      if (j == size || mySortedSet.get(j).compareTo(e) != 0) {
+        return false;
+      }
+      j++;
     }
     return true;
   }
 
   @Override
   public ISet<E> intersection(ISet<E> otherSet) {
-    if (otherSet == null) {
-      throw new IllegalArgumentException("other set is invalid");
+    SortedSet<E> other = sorted(otherSet);
+    if (other == null) {
+      ISet<E> result = new UnsortedSet<>();
+      for (E e : this) {
+        if (otherSet.contains(e)) {
+          result.add(e);
+        }
+      }
+      return result;
+    }
+    ArrayList<E> small = mySortedSet;
+    ArrayList<E> large = other.mySortedSet;
+    if (small.size() > large.size()) {
+      small = other.mySortedSet;
+      large = mySortedSet;
     }
-    ISet<E> result = new UnsortedSet<>();
-    for (E e : this) {
-      if (otherSet.contains(e)) {
-        result.add(e);
+    SortedSet<E> result = new SortedSet<>(small.size());
+    boolean gallop = large.size() / GALLOP_RATIO >= small.size();
+    int j = 0;
+    for (int i = 0; i < small.size() && j < large.size(); i++) {
+      E e = small.get(i);
+      j = gallop ? gallop(large, e, j) : advance(large, e, j);
+      if (j < large.size() && large.get(j).compareTo(e) == 0) {
+        result.mySortedSet.add(e);
+        j++;
       }
     }
+    result.resync();
+    return result;
+  }
+
+  @Override
+  public ISet<E> difference(ISet<E> otherSet) {
+    SortedSet<E> other = sorted(otherSet);
+    if (other == null) {
+      return super.difference(otherSet);
+    }
+    ArrayList<E> theirs = other.mySortedSet;
+    SortedSet<E> result = new SortedSet<>(size);
+    if (size / GALLOP_RATIO >= theirs.size()) {
+      // few elements to take out, copy the runs between them
+      int from = 0;
+      for (E e : theirs) {
+        int to = gallop(mySortedSet, e, from);
+        result.mySortedSet.addAll(mySortedSet.subList(from, to));
+        from = to;
+        if (from < size && mySortedSet.get(from).compareTo(e) == 0) {
+          from++;
+        }
+      }
+      result.mySortedSet.addAll(mySortedSet.subList(from, size));
+    } else {
+      boolean gallop = theirs.size() / GALLOP_RATIO >= size;
+      int j = 0;
+      for (E e : mySortedSet) {
+        j = gallop ? gallop(theirs, e, j) : advance(theirs, e, j);
+        if (j == theirs.size() || theirs.get(j).compareTo(e) != 0) {
+          result.mySortedSet.add(e);
+        }
+      }
+    }
+    result.resync();
     return result;
   }
 
@@ -143,23 +434,102 @@ public class SortedSet<E extends Comparable<? super E>> extends AbstractSet<E> {
         if (!removeOK) {
           throw new IllegalStateException();
         }
-        mySortedSet.remove(erase);
+        removeAt(erase);
         current--;
-        size--;
         removeOK = false;
       }
     };
     return itr;
   }
 
+  // splits by index range; the elements are in natural order
+  @Override
+  public Spliterator<E> spliterator() {
+    return new IndexSpliterator<>(mySortedSet, 0, size,
+        Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL);
+  }
+
   @Override
   public boolean remove(E item) {
     if (item == null) {
       throw new IllegalArgumentException("Item is null");
     }
-    boolean removed = mySortedSet.remove(item);
-    size -= removed ? 1 : 0;
-    return removed;
+    int index = Collections.binarySearch(mySortedSet, item);
+    if (index < 0) {
+      return false;
+    }
+    removeAt(index);
+    return true;
+  }
+
+  /*
+   * One compaction pass over the backing list. Against another SortedSet
+   * membership is decided by merging (or galloping) through its list
+   * rather than by a binary search per element.
+   */
+  @Override
+  public boolean removeAll(ISet<E> otherSet) {
+    SortedSet<E> other = sorted(otherSet);
+    if (otherSet == this) {
+      boolean modified = size > 0;
+      clear();
+      return modified;
+    }
+    return removeIf(other == null ? otherSet::contains : other.merger(size));
+  }
+
+  @Override
+  public boolean retainAll(ISet<E> otherSet) {
+    SortedSet<E> other = sorted(otherSet);
+    if (otherSet == this) {
+      return false;
+    }
+    Predicate<E> inOther = other == null ? otherSet::contains : other.merger(size);
+    return removeIf(inOther.negate());
+  }
+
+  /*
+   * Two passes, as in ArrayList.removeIf: the filter sees the whole,
+   * unchanged set (it may call contains), and if it throws nothing has
+   * been removed. Then the survivors are moved to the front of the list
+   * and the tail is dropped once.
+   */
+  @Override
+  public boolean removeIf(Predicate<? super E> filter) {
+    if (filter == null) {
+      throw new IllegalArgumentException("Filter is null");
+    }
+    BitSet doomed = new BitSet(size);
+    for (int i = 0; i < size; i++) {
+      if (filter.test(mySortedSet.get(i))) {
+        doomed.set(i);
+      }
+    }
+    int kept = doomed.nextSetBit(0);
+    if (kept < 0) {
+      return false;
+    }
+    long removed = 0;
+    for (int i = kept; i < size; i++) {
+      E e = mySortedSet.get(i);
+      if (doomed.get(i)) {
+        removed += ISet.fingerprintOf(e);
+      } else {
+        mySortedSet.set(kept++, e);
+      }
+    }
+    mySortedSet.subList(kept, size).clear();
+    size = kept;
+    fingerprint -= removed;
+    return true;
+  }
+
+  // O(1), the backing list is replaced rather than emptied
+  @Override
+  public void clear() {
+    mySortedSet = new ArrayList<>();
+    size = 0;
+    fingerprint = 0;
   }
 
   @Override
@@ -167,25 +537,369 @@ public class SortedSet<E extends Comparable<? super E>> extends AbstractSet<E> {
     return size;
   }
 
+  /*
+   * Returns a membership test for this set that must be asked about keys
+   * in ascending order. It keeps its place in the list between calls, so
+   * a whole pass costs one merge, or galloping steps when the keys are
+   * few (keyCount is their expected number).
+   */
+  private Predicate<E> merger(int keyCount) {
+    boolean gallop = size / GALLOP_RATIO >= keyCount;
+    int[] from = { 0 };
+    return e -> {
+      int j = gallop ? gallop(mySortedSet, e, from[0]) : advance(mySortedSet, e, from[0]);
+      from[0] = j;
+      return j < size && mySortedSet.get(j).compareTo(e) == 0;
+    };
+  }
+
   @Override
   public ISet<E> union(ISet<E> otherSet) {
-    if (otherSet == null) {
-      throw new IllegalArgumentException("other set is invalid");
+    SortedSet<E> other = sorted(otherSet);
+    if (other == null) {
+      SortedSet<E> result = new SortedSet<>(size + otherSet.size());
+      result.mySortedSet.addAll(mySortedSet);
+      result.size = size;
+      result.fingerprint = fingerprint;
+      result.addAll(otherSet);
+      return result;
+    }
+    ArrayList<E> small = mySortedSet;
+    ArrayList<E> large = other.mySortedSet;
+    if (small.size() > large.size()) {
+      small = other.mySortedSet;
+      large = mySortedSet;
     }
-    ISet<E> result = new UnsortedSet<>();
-    for (E e : this) {
-      result.add(e);
-      for (E v : otherSet) {
-        result.add(v);
+    SortedSet<E> result = new SortedSet<>(small.size() + large.size());
+    ArrayList<E> merged = result.mySortedSet;
+    boolean gallop = large.size() / GALLOP_RATIO >= small.size();
+    int j = 0;
+    for (E e : small) {
+      int to = gallop ? gallop(large, e, j) : advance(large, e, j);
+      merged.addAll(large.subList(j, to));
+      j = to;
+      merged.add(e);
+      if (j < large.size() && large.get(j).compareTo(e) == 0) {
+        j++; // present in both
       }
     }
+    merged.addAll(large.subList(j, large.size()));
+    result.resync();
     return result;
   }
 
+  // kept up to date by add and remove, O(1)
+  @Override
+  public long fingerprint() {
+    return fingerprint;
+  }
+
+  // sets size and fingerprint after the backing list was filled directly
+  private void resync() {
+    size = mySortedSet.size();
+    long sum = 0;
+    for (E e : mySortedSet) {
+      sum += ISet.fingerprintOf(e);
+    }
+    fingerprint = sum;
+  }
+
+  // Views of this set iterate in ascending order, so chains merge instead of probing.
+  @Override
+  public SetView<E> view() {
+    return SetView.sorted(this, Comparator.naturalOrder());
+  }
+
+  private static <E> E check(E item) {
+    if (item == null) {
+      throw new IllegalArgumentException("Item is null");
+    }
+    return item;
+  }
+
+  // index of the first element >= key, size if there is none
+  private int lowerBound(E key) {
+    int index = Collections.binarySearch(mySortedSet, key);
+    return index >= 0 ? index : -(index + 1);
+  }
+
+  // index of the first element > key, size if there is none
+  private int upperBound(E key) {
+    int index = Collections.binarySearch(mySortedSet, key);
+    return index >= 0 ? index + 1 : -(index + 1);
+  }
+
+  // removes the element at index, keeping size and fingerprint in step
+  private void removeAt(int index) {
+    fingerprint -= ISet.fingerprintOf(mySortedSet.remove(index));
+    size--;
+  }
+
+  /**
+   * A live range of a SortedSet, returned by subSet, headSet and tailSet.
+   * Holds no elements of its own; every call works on the backing set's
+   * list between two indices found by binary search.
+   */
+  public class SubSet extends AbstractSet<E> {
+    // a null bound means unbounded on that side
+    private final E lo;
+    private final boolean loInclusive;
+    private final E hi;
+    private final boolean hiInclusive;
+
+    private SubSet(E lo, boolean loInclusive, E hi, boolean hiInclusive) {
+      this.lo = lo;
+      this.loInclusive = loInclusive;
+      this.hi = hi;
+      this.hiInclusive = hiInclusive;
+    }
+
+    // first index in range
+    private int start() {
+      if (lo == null) {
+        return 0;
+      }
+      return loInclusive ? lowerBound(lo) : upperBound(lo);
+    }
+
+    // one past the last index in range
+    private int end(int start) {
+      if (hi == null) {
+        return size;
+      }
+      return Math.max(start, hiInclusive ? upperBound(hi) : lowerBound(hi));
+    }
+
+    private boolean inRange(E item) {
+      if (lo != null) {
+        int c = item.compareTo(lo);
+        if (c < 0 || (c == 0 && !loInclusive)) {
+          return false;
+        }
+      }
+      if (hi != null) {
+        int c = item.compareTo(hi);
+        if (c > 0 || (c == 0 && !hiInclusive)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public boolean add(E item) {
+      if (!inRange(check(item))) {
+        throw new IllegalArgumentException("Item out of range");
+      }
+      return SortedSet.this.add(item);
+    }
+
+    @Override
+    public boolean contains(E item) {
+      return inRange(check(item)) && SortedSet.this.contains(item);
+    }
+
+    @Override
+    public boolean remove(E item) {
+      return inRange(check(item)) && SortedSet.this.remove(item);
+    }
+
+    // O(log n)
+    @Override
+    public int size() {
+      int start = start();
+      return end(start) - start;
+    }
+
+    /**
+     * Return the smallest element in this range. O(log n).
+     * <br>
+     * pre: size() != 0
+     *
+     * @return the smallest element in this range
+     */
+    public E min() {
+      int start = start();
+      if (start == end(start)) {
+        throw new IllegalStateException("Set is Empty");
+      }
+      return mySortedSet.get(start);
+    }
+
+    /**
+     * Return the largest element in this range. O(log n).
+     * <br>
+     * pre: size() != 0
+     *
+     * @return the largest element in this range
+     */
+    public E max() {
+      int start = start();
+      int end = end(start);
+      if (start == end) {
+        throw new IllegalStateException("Set is Empty");
+      }
+      return mySortedSet.get(end - 1);
+    }
+
+    // drops the whole range from the backing list at once
+    @Override
+    public void clear() {
+      int start = start();
+      int end = end(start);
+      List<E> range = mySortedSet.subList(start, end);
+      for (E e : range) {
+        fingerprint -= ISet.fingerprintOf(e);
+      }
+      range.clear();
+      size -= end - start;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+      Iterator<E> itr = new Iterator<E>() {
+        private int current = start();
+        private int end = end(current);
+        private boolean removeOK;
+
+        @Override
+        public boolean hasNext() {
+          return current < end;
+        }
+
+        @Override
+        public E next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          removeOK = true;
+          return mySortedSet.get(current++);
+        }
+
+        @Override
+        public void remove() {
+          if (!removeOK) {
+            throw new IllegalStateException();
+          }
+          removeAt(--current);
+          end--;
+          removeOK = false;
+        }
+      };
+      return itr;
+    }
+
+    @Override
+    public Spliterator<E> spliterator() {
+      int start = start();
+      return new IndexSpliterator<>(mySortedSet, start, end(start),
+          Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL);
+    }
+
+    @Override
+    public SetView<E> view() {
+      return SetView.sorted(this, Comparator.naturalOrder());
+    }
+
+    /**
+     * Copy the elements in this range into a new SortedSet.
+     *
+     * @return a SortedSet with the elements of this range
+     */
+    public SortedSet<E> toSortedSet() {
+      int start = start();
+      int end = end(start);
+      SortedSet<E> result = new SortedSet<>(end - start);
+      result.mySortedSet.addAll(mySortedSet.subList(start, end));
+      result.resync();
+      return result;
+    }
+
+    // The set algebra runs on a copy of the range, using SortedSet's merges.
+    @Override
+    public ISet<E> intersection(ISet<E> otherSet) {
+      return toSortedSet().intersection(unwrap(otherSet));
+    }
+
+    @Override
+    public ISet<E> union(ISet<E> otherSet) {
+      return toSortedSet().union(unwrap(otherSet));
+    }
+
+    @Override
+    public ISet<E> difference(ISet<E> otherSet) {
+      return toSortedSet().difference(unwrap(otherSet));
+    }
+
+    @Override
+    public Object clone() {
+      Object result = new SortedSet<E>();
+      return result;
+    }
+
+    private ISet<E> unwrap(ISet<E> otherSet) {
+      if (otherSet instanceof SortedSet.SubSet) {
+        return ((SortedSet<E>.SubSet) otherSet).toSortedSet();
+      }
+      return otherSet;
+    }
+  }
+
   @Override
   public Object clone() {
     Object result = new SortedSet<>();
     return result;
   }
 
+  // returns otherSet as a SortedSet if it is one, null otherwise
+  @SuppressWarnings("unchecked")
+  private static <E extends Comparable<? super E>> SortedSet<E> sorted(ISet<E> otherSet) {
+    if (otherSet == null) {
+      throw new IllegalArgumentException("other set is invalid");
+    }
+    return otherSet instanceof SortedSet ? (SortedSet<E>) otherSet : null;
+  }
+
+  /*
+   * Returns the first index >= from whose element is not less than key,
+   * stepping one element at a time. Used by the linear merges.
+   */
+  private static <E extends Comparable<? super E>> int advance(ArrayList<E> list, E key, int from) {
+    while (from < list.size() && list.get(from).compareTo(key) < 0) {
+      from++;
+    }
+    return from;
+  }
+
+  /*
+   * Same result as advance, found with a galloping search: probe from + 1,
+   * from + 3, from + 7, ... until the key is passed, then binary search the
+   * last step. Costs O(log d) where d is the distance moved.
+   */
+  private static <E extends Comparable<? super E>> int gallop(ArrayList<E> list, E key, int from) {
+    int n = list.size();
+    if (from >= n || list.get(from).compareTo(key) >= 0) {
+      return from;
+    }
+    // invariant: list.get(lo) < key
+    int lo = from;
+    int step = 1;
+    int hi = lo + step;
+    while (hi < n && list.get(hi).compareTo(key) < 0) {
+      lo = hi;
+      step <<= 1;
+      hi = lo + step;
+    }
+    hi = Math.min(hi, n);
+    // answer is in (lo, hi]
+    while (lo + 1 < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (list.get(mid).compareTo(key) < 0) {
+        lo = mid;
+      } else {
+        hi = mid;
+      }
+    }
+    return hi;
+  }
 }
\ No newline at end of file
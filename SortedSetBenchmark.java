@@ -0,0 +1,157 @@
+/*
+ * Compares LockFreeSkipListSet with a SortedSet guarded by a
+ * ReentrantReadWriteLock at 1, 4, 16 and 64 threads.
+ *
+ * Each thread runs a read-mostly mix (80% contains, 10% add, 10% remove)
+ * over random keys for a fixed time, and the total throughput is printed.
+ * Run with: java SortedSetBenchmark [millisPerRun] [keyRange]
+ */
+
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class SortedSetBenchmark {
+
+  private static final int[] THREADS = { 1, 4, 16, 64 };
+
+  public static void main(String[] args) throws InterruptedException {
+    long millis = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+    int keyRange = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+    System.out.printf("%-22s %8s %16s%n", "set", "threads", "ops/sec");
+    for (int threads : THREADS) {
+      run("LockFreeSkipListSet", new LockFreeSkipListSet<>(), threads, millis, keyRange);
+      run("RW-locked SortedSet", new ReadWriteLockedSet<>(new SortedSet<Integer>()), threads, millis, keyRange);
+    }
+  }
+
+  private static void run(String name, ISet<Integer> set, int threads, long millis, int keyRange)
+      throws InterruptedException {
+    for (int i = 0; i < keyRange; i += 2) {
+      set.add(i); // start half full so adds and removes both do work
+    }
+    LongAdder ops = new LongAdder();
+    CountDownLatch start = new CountDownLatch(1);
+    Thread[] workers = new Thread[threads];
+    long[] deadline = new long[1];
+    for (int t = 0; t < threads; t++) {
+      workers[t] = new Thread(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        long done = 0;
+        while ((done & 1023) != 0 || System.nanoTime() < deadline[0]) {
+          int key = random.nextInt(keyRange);
+          int op = random.nextInt(10);
+          if (op == 0) {
+            set.add(key);
+          } else if (op == 1) {
+            set.remove(key);
+          } else {
+            set.contains(key);
+          }
+          done++;
+        }
+        ops.add(done);
+      });
+      workers[t].start();
+    }
+    deadline[0] = System.nanoTime() + millis * 1_000_000L;
+    start.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    System.out.printf("%-22s %8d %16.0f%n", name, threads, ops.sum() * 1000.0 / millis);
+  }
+
+  /*
+   * The baseline: every read shares one read lock and every write takes
+   * the write lock of the same ReentrantReadWriteLock.
+   */
+  private static class ReadWriteLockedSet<E> extends AbstractSet<E> {
+    private final AbstractSet<E> set;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    ReadWriteLockedSet(AbstractSet<E> set) {
+      this.set = set;
+    }
+
+    @Override
+    public boolean add(E item) {
+      lock.writeLock().lock();
+      try {
+        return set.add(item);
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    @Override
+    public boolean remove(E item) {
+      lock.writeLock().lock();
+      try {
+        return set.remove(item);
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    @Override
+    public boolean contains(E item) {
+      lock.readLock().lock();
+      try {
+        return set.contains(item);
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    @Override
+    public int size() {
+      lock.readLock().lock();
+      try {
+        return set.size();
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    // not used by the benchmark, and not safe while writers run
+    @Override
+    public Iterator<E> iterator() {
+      return set.iterator();
+    }
+
+    @Override
+    public ISet<E> intersection(ISet<E> otherSet) {
+      lock.readLock().lock();
+      try {
+        return set.intersection(otherSet);
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    @Override
+    public ISet<E> union(ISet<E> otherSet) {
+      lock.readLock().lock();
+      try {
+        return set.union(otherSet);
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    // an empty locked set around an empty set of the wrapped kind
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object clone() {
+      return new ReadWriteLockedSet<>((AbstractSet<E>) set.clone());
+    }
+  }
+}
@@ -5,8 +5,11 @@
  */
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Predicate;
 
 /**
  * A simple implementation of an ISet. 
@@ -21,6 +24,7 @@ public class UnsortedSet<E> extends AbstractSet<E> {
 
     private ArrayList<E> myUnSortedSet; 
     private int size;
+    private long fingerprint; // sum of ISet.fingerprintOf over the elements
  
     public UnsortedSet() {
     	myUnSortedSet = new ArrayList<>();
@@ -59,7 +63,7 @@ public class UnsortedSet<E> extends AbstractSet<E> {
 				if(!removeOK) {
 					throw new IllegalStateException();
 				}
-				myUnSortedSet.remove(erase);
+				fingerprint -= ISet.fingerprintOf(myUnSortedSet.remove(erase));
 				current--;
 				size--;
 				removeOK = false;
@@ -68,6 +72,13 @@ public class UnsortedSet<E> extends AbstractSet<E> {
 		return itr;
 	}
 	
+	// splits by index range of the backing ArrayList
+	@Override
+	public Spliterator<E> spliterator() {
+		return new IndexSpliterator<>(myUnSortedSet, 0, size,
+				Spliterator.DISTINCT | Spliterator.NONNULL);
+	}
+	
 	@Override
 	public boolean add(E item) {
 		if(item == null) {
@@ -82,6 +93,7 @@ public class UnsortedSet<E> extends AbstractSet<E> {
 		}
 		myUnSortedSet.add(item);
 		size++;
+		fingerprint += ISet.fingerprintOf(item);
 		return true;
 	}
 
@@ -91,7 +103,10 @@ public class UnsortedSet<E> extends AbstractSet<E> {
 			throw new IllegalArgumentException("Item is null");
 		}
 		boolean removed = myUnSortedSet.remove(item);
-		size -= removed ? 1 : 0;
+		if(removed) {
+			size--;
+			fingerprint -= ISet.fingerprintOf(item);
+		}
 		return removed;
 	}
 	
@@ -100,6 +115,71 @@ public class UnsortedSet<E> extends AbstractSet<E> {
 		return size;
 	}
 	
+	/*
+	 * The filter is first run over the whole, unchanged set, then one
+	 * compaction pass moves the survivors to the front of the list and the
+	 * tail is dropped at once, instead of shifting the list for every
+	 * removal. A filter that throws leaves the set as it was. retainAll
+	 * inherits from AbstractSet and ends up here.
+	 */
+	@Override
+	public boolean removeIf(Predicate<? super E> filter) {
+		if(filter == null) {
+			throw new IllegalArgumentException("Filter is null");
+		}
+		BitSet doomed = new BitSet(size);
+		for(int i = 0; i < size; i++) {
+			if(filter.test(myUnSortedSet.get(i))) {
+				doomed.set(i);
+			}
+		}
+		int kept = doomed.nextSetBit(0);
+		if(kept < 0) {
+			return false;
+		}
+		long removed = 0;
+		for(int i = kept; i < size; i++) {
+			E e = myUnSortedSet.get(i);
+			if(doomed.get(i)) {
+				removed += ISet.fingerprintOf(e);
+			} else {
+				myUnSortedSet.set(kept++, e);
+			}
+		}
+		myUnSortedSet.subList(kept, size).clear();
+		size = kept;
+		fingerprint -= removed;
+		return true;
+	}
+	
+	// a single removeIf pass, never one ArrayList.remove per element
+	@Override
+	public boolean removeAll(ISet<E> otherSet) {
+		if(otherSet == null) {
+			throw new IllegalArgumentException("other set is invalid");
+		}
+		if(otherSet == this) {
+			boolean modified = size > 0;
+			clear();
+			return modified;
+		}
+		return removeIf(otherSet::contains);
+	}
+	
+	// O(1), the backing list is replaced rather than emptied
+	@Override
+	public void clear() {
+		myUnSortedSet = new ArrayList<>();
+		size = 0;
+		fingerprint = 0;
+	}
+	
+	// kept up to date by add and remove, O(1)
+	@Override
+	public long fingerprint() {
+		return fingerprint;
+	}
+	
 	@Override
 	public Object clone() {
 		Object result = new UnsortedSet<>();